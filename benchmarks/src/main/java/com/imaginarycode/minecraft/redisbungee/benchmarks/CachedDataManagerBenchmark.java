@@ -0,0 +1,113 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.imaginarycode.minecraft.redisbungee.manager.PlayerRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager} lookups, answered from the
+ * cache and, after the entry was invalidated, from Redis. The batch benchmarks look up {@value #BATCH} uncached
+ * players one by one and with a single pipeline.
+ * <p>
+ * The in-process Redis writes every reply separately without disabling Nagle's algorithm, so each pipeline stalls
+ * for about 40 ms on delayed acknowledgements. Compare how the batch benchmarks scale with {@link #BATCH} rather
+ * than their absolute times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachedDataManagerBenchmark {
+
+    /**
+     * Well below the cache size, so cached lookups are not measured against evictions.
+     */
+    private static final int HOT_PLAYERS = 256;
+
+    /**
+     * The size of a typical friend list.
+     */
+    private static final int BATCH = 50;
+
+    @Param({"1000"})
+    public int players;
+
+    private RedisFixture fixture;
+    private UUID[] uuids;
+    private int next;
+    private int nextHot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new RedisFixture();
+        fixture.seed(players);
+        uuids = fixture.players.toArray(new UUID[0]);
+        for (int i = 0; i < Math.min(HOT_PLAYERS, uuids.length); i++) {
+            fixture.cachedDataManager.getServer(uuids[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    private UUID nextPlayer() {
+        UUID uuid = uuids[next];
+        next = (next + 1) % uuids.length;
+        return uuid;
+    }
+
+    @Benchmark
+    public String getServerCached() {
+        UUID uuid = uuids[nextHot];
+        nextHot = (nextHot + 1) % Math.min(HOT_PLAYERS, uuids.length);
+        return fixture.cachedDataManager.getServer(uuid);
+    }
+
+    @Benchmark
+    public String getServerFromRedis() {
+        UUID uuid = nextPlayer();
+        fixture.cachedDataManager.invalidate(uuid);
+        return fixture.cachedDataManager.getServer(uuid);
+    }
+
+    @Benchmark
+    public String getProxyFromRedis() {
+        UUID uuid = nextPlayer();
+        fixture.cachedDataManager.invalidate(uuid);
+        return fixture.cachedDataManager.getProxy(uuid);
+    }
+
+    @Benchmark
+    public List<String> getServersFromRedisOneByOne() {
+        List<String> servers = new ArrayList<>(BATCH);
+        for (UUID uuid : nextBatch()) {
+            servers.add(fixture.cachedDataManager.getServer(uuid));
+        }
+        return servers;
+    }
+
+    @Benchmark
+    public Map<UUID, PlayerRecord> getRecordsFromRedis() {
+        return fixture.cachedDataManager.getRecords(nextBatch());
+    }
+
+    private List<UUID> nextBatch() {
+        List<UUID> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            UUID uuid = nextPlayer();
+            fixture.cachedDataManager.invalidate(uuid);
+            batch.add(uuid);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,98 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import com.google.gson.Gson;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LoginPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LogoutPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ServerChangePayload;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessageCodec;
+import com.imaginarycode.minecraft.redisbungee.pubsub.ServerNameRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and binary encodings of the data channel messages.
+ * <p>
+ * The encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataMessageCodecBenchmark {
+
+    @Param({"JOIN", "LEAVE", "SERVER_CHANGE"})
+    public DataManagerMessage.Action action;
+
+    private DataMessageCodec codec;
+    private DataManagerMessage<?> message;
+    private String json;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws UnknownHostException {
+        ServerNameRegistry registry = new ServerNameRegistry();
+        registry.register(1, "proxy-1");
+        registry.register(2, "lobby-1");
+        registry.register(3, "survival-1");
+
+        codec = new DataMessageCodec();
+        ReflectionTestUtils.setField(codec, "gson", new Gson());
+        ReflectionTestUtils.setField(codec, "serverNameRegistry", registry);
+
+        message = createMessage(action);
+        json = codec.encodeJson(message);
+        binary = codec.encode(message);
+
+        System.out.println();
+        System.out.println(action + ": JSON " + json.getBytes(StandardCharsets.UTF_8).length + " bytes, binary " + binary.length + " bytes");
+    }
+
+    private static DataManagerMessage<?> createMessage(DataManagerMessage.Action action) throws UnknownHostException {
+        UUID target = UUID.randomUUID();
+        DataManagerMessage<?> message;
+        switch (action) {
+            case JOIN:
+                message = new DataManagerMessage<>(target, "proxy-1", action, new LoginPayload(InetAddress.getByName("192.168.10.24")));
+                break;
+            case LEAVE:
+                message = new DataManagerMessage<>(target, "proxy-1", action, new LogoutPayload(System.currentTimeMillis()));
+                break;
+            default:
+                message = new DataManagerMessage<>(target, "proxy-1", action, new ServerChangePayload("survival-1", "lobby-1"));
+                break;
+        }
+        message.setEpoch(System.currentTimeMillis());
+        message.setSequence(123456);
+        return message;
+    }
+
+    @Benchmark
+    public String encodeJson() {
+        return codec.encodeJson(message);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return codec.encode(message);
+    }
+
+    @Benchmark
+    public DataManagerMessage<?> decodeJson() {
+        return codec.decodeJson(json);
+    }
+
+    @Benchmark
+    public List<DataManagerMessage<?>> decodeBinary() {
+        return codec.decode(binary);
+    }
+}
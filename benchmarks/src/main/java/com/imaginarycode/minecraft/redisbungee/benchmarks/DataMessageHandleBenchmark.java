@@ -0,0 +1,65 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ServerChangePayload;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the receiving side of the data channels: decoding a SERVER_CHANGE message from another proxy and
+ * applying it to the caches and the server index, the way the dispatcher lanes do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataMessageHandleBenchmark {
+
+    private RedisFixture fixture;
+    private String json;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new RedisFixture();
+        for (int i = 0; i < RedisFixture.PROXIES.length; i++) {
+            fixture.serverNameRegistry.register(i + 1, RedisFixture.PROXIES[i]);
+        }
+        for (int i = 0; i < fixture.serverNames.size(); i++) {
+            fixture.serverNameRegistry.register(RedisFixture.PROXIES.length + i + 1, fixture.serverNames.get(i));
+        }
+
+        DataManagerMessage<?> message = new DataManagerMessage<>(UUID.randomUUID(), "proxy2",
+                DataManagerMessage.Action.SERVER_CHANGE, new ServerChangePayload("server1", "server0"));
+        message.setEpoch(System.currentTimeMillis());
+        message.setSequence(1);
+        json = fixture.codec.encodeJson(message);
+        binary = fixture.codec.encode(message);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public DataManagerMessage<?> handleJson() {
+        DataManagerMessage<?> message = fixture.codec.decodeJson(json);
+        fixture.pubSubMessageListener.handleDataMessage(message);
+        return message;
+    }
+
+    @Benchmark
+    public List<DataManagerMessage<?>> handleBinary() {
+        List<DataManagerMessage<?>> messages = fixture.codec.decode(binary);
+        for (DataManagerMessage<?> message : messages) {
+            fixture.pubSubMessageListener.handleDataMessage(message);
+        }
+        return messages;
+    }
+}
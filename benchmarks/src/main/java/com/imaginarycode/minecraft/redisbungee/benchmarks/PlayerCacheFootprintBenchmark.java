@@ -0,0 +1,109 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.net.InetAddresses;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.manager.PlayerRecord;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetAddress;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills a player cache built like the one in {@link com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager}.
+ * The heap retained per entry is printed when a trial starts, next to {@link PlayerRecord#estimateBytes()}, which
+ * the {@code cache.player.estimatedBytes} gauge adds up. Every trial runs in its own fork, so earlier trials do not
+ * disturb the measurement. Rerun it when the record or the cache spec changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerCacheFootprintBenchmark {
+
+    /**
+     * The maximum size of the default cache spec.
+     */
+    @Param({"10000"})
+    public int players;
+
+    @Param({"none", "ipv4", "ipv6"})
+    public String address;
+
+    private UUID[] uuids;
+    private PlayerRecord[] records;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        uuids = new UUID[players];
+        records = new PlayerRecord[players];
+        for (int i = 0; i < players; i++) {
+            uuids[i] = new UUID(random.nextLong(), random.nextLong());
+            records[i] = address.equals("none") ? PlayerRecord.offline(i + 1) : PlayerRecord.online(RedisFixture.PROXY, address(random));
+        }
+
+        System.out.println();
+        System.out.println("Retained per entry: " + retainedBytes() / players + " bytes, estimated: " + records[0].estimateBytes() + " bytes");
+    }
+
+    private InetAddress address(Random random) {
+        if (address.equals("ipv4"))
+            return InetAddresses.fromInteger(random.nextInt());
+        return InetAddresses.forString(String.format("2001:db8::%x:%x", random.nextInt(0x10000), random.nextInt(0x10000)));
+    }
+
+    private long retainedBytes() {
+        // The cache gets copies of the keys, records and addresses, which only stay on the heap as part of it.
+        PlayerRecord[] template = records;
+        UUID[] keys = uuids;
+        records = null;
+        uuids = null;
+
+        long before = usedHeap();
+        Cache<UUID, PlayerRecord> cache = newCache();
+        for (int i = 0; i < keys.length; i++) {
+            PlayerRecord record = template[i];
+            cache.put(new UUID(keys[i].getMostSignificantBits(), keys[i].getLeastSignificantBits()),
+                    new PlayerRecord(record.getServer(), record.getProxy(), copy(record.getAddress()), record.getLastOnline()));
+        }
+        long retained = usedHeap() - before;
+
+        records = template;
+        uuids = keys;
+        // Keep the cache reachable until it was measured.
+        return cache.size() == 0 ? 0 : retained;
+    }
+
+    private static Cache<UUID, PlayerRecord> newCache() {
+        // The spec refreshes entries, which needs a loader even though the entries are only put.
+        return CacheBuilder.from(RedisBungeeConfiguration.DEFAULT_CACHE_SPEC).recordStats().build(CacheLoader.from(uuid -> PlayerRecord.UNKNOWN));
+    }
+
+    private static InetAddress copy(InetAddress address) {
+        return address == null ? null : InetAddresses.forString(InetAddresses.toAddrString(address));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public Cache<UUID, PlayerRecord> fillCache() {
+        Cache<UUID, PlayerRecord> cache = newCache();
+        for (int i = 0; i < uuids.length; i++) {
+            cache.put(uuids[i], records[i]);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,103 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import com.google.common.collect.Multimap;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the network wide player lookups of {@link com.imaginarycode.minecraft.redisbungee.manager.PlayerManager}:
+ * the union of all proxies' player sets fetched from Redis and read from the in-memory online index, before and
+ * after a join, and fetching the players of every server from Redis and reading them from the in-memory server
+ * index. The sets hold textual or binary UUIDs; the bytes SUNION returns are printed when a trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerManagerBenchmark {
+
+    @Param({"1000", "10000"})
+    public int players;
+
+    @Param({"false", "true"})
+    public boolean binaryUuids;
+
+    private RedisFixture fixture;
+    private UUID joining;
+    private boolean joined;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new RedisFixture();
+        fixture.seed(players);
+        if (binaryUuids)
+            fixture.useBinaryUuids();
+        System.out.println();
+        System.out.println("SUNION payload: " + unionBytes() + " bytes");
+        // The scheduler is mocked, so the index is filled by hand.
+        ReflectionTestUtils.invokeMethod(fixture.serverPlayersIndex, "resync");
+        ReflectionTestUtils.invokeMethod(fixture.onlinePlayersIndex, "resync");
+        joining = UUID.randomUUID();
+    }
+
+    private long unionBytes() {
+        final byte[][] keys = new byte[RedisFixture.PROXIES.length][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = fixture.redisKeys.proxyPlayers(RedisFixture.PROXIES[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        Set<byte[]> members = fixture.redisTemplate.execute((RedisCallback<Set<byte[]>>) connection -> connection.sUnion(keys));
+        long bytes = 0;
+        for (byte[] member : members) {
+            bytes += member.length;
+        }
+        return bytes;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Set<UUID> fetchPlayers() {
+        return fixture.onlinePlayersIndex.fetch();
+    }
+
+    @Benchmark
+    public Set<UUID> getPlayers() {
+        return fixture.playerManager.getPlayers();
+    }
+
+    @Benchmark
+    public Set<UUID> getPlayersAfterJoin() {
+        if (joined)
+            fixture.onlinePlayersIndex.playerLeft(joining);
+        else
+            fixture.onlinePlayersIndex.playerJoined(joining);
+        joined = !joined;
+        return fixture.playerManager.getPlayers();
+    }
+
+    @Benchmark
+    public Multimap<String, UUID> fetchServersToPlayers() {
+        return fixture.serverPlayersIndex.fetch(fixture.serverNames);
+    }
+
+    @Benchmark
+    public Multimap<String, UUID> serversToPlayers() {
+        return fixture.playerManager.serversToPlayers();
+    }
+
+    @Benchmark
+    public int getCount() {
+        return fixture.playerManager.getCount();
+    }
+}
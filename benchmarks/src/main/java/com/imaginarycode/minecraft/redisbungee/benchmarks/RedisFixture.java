@@ -0,0 +1,349 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.google.gson.Gson;
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeAPI;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.RedisUtil;
+import com.imaginarycode.minecraft.redisbungee.listener.PubSubMessageListener;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
+import com.imaginarycode.minecraft.redisbungee.manager.PlayerManager;
+import com.imaginarycode.minecraft.redisbungee.manager.PlayerReplica;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.manager.OnlinePlayersIndex;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerPlayersIndex;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessageCodec;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher;
+import com.imaginarycode.minecraft.redisbungee.pubsub.ServerNameRegistry;
+import com.imaginarycode.minecraft.redisbungee.util.ReadRouter;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.ScriptRegistry;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
+import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDTranslator;
+import de.pesacraft.bungee.core.server.ServerInformation;
+import de.pesacraft.shares.config.CustomRedisTemplate;
+import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.config.ProxyConfig;
+import net.md_5.bungee.api.config.ServerInfo;
+import net.md_5.bungee.api.connection.PendingConnection;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.connection.Server;
+import net.md_5.bungee.api.plugin.PluginManager;
+import net.md_5.bungee.api.scheduler.TaskScheduler;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Wires RedisBungee's components by hand against an in-process Redis stand-in, so benchmarks run offline
+ * and without a proxy.
+ * <p>
+ * The stand-in answers over a real socket, so every benchmark pays for the same serialization and network
+ * stack as production, only without the network latency. The proxy itself is mocked; the mocks do not
+ * record invocations, so they do not grow during a run.
+ */
+public class RedisFixture implements AutoCloseable {
+    public static final String PROXY = "proxy1";
+    public static final String[] PROXIES = {PROXY, "proxy2", "proxy3"};
+    public static final int SERVERS = 20;
+
+    private final RedisServer server;
+    private final LettuceConnectionFactory connectionFactory;
+
+    public final CustomRedisTemplate redisTemplate;
+    public final RedisBungeeConfiguration configuration = new RedisBungeeConfiguration();
+    public final RedisBungeeMetrics metrics = new RedisBungeeMetrics();
+    public final ServerNameRegistry serverNameRegistry = new ServerNameRegistry();
+    public final DataMessageCodec codec = new DataMessageCodec();
+    public final DataMessagePublisher publisher = new DataMessagePublisher();
+    public final ServerManager serverManager = new ServerManager();
+    public final PlayerReplica playerReplica = new PlayerReplica();
+    public final CachedDataManager cachedDataManager = new CachedDataManager();
+    public final ServerPlayersIndex serverPlayersIndex = new ServerPlayersIndex();
+    public final OnlinePlayersIndex onlinePlayersIndex = new OnlinePlayersIndex();
+    public final PlayerManager playerManager = new PlayerManager();
+    public final UUIDTranslator uuidTranslator = new UUIDTranslator();
+    public final UuidMemberCodec uuidMemberCodec = new UuidMemberCodec();
+    public final ScriptRegistry scriptRegistry = new ScriptRegistry();
+    public final RedisKeys redisKeys = new RedisKeys();
+    public final ReadRouter readRouter = new ReadRouter();
+    public final RedisUtil redisUtil = BeanUtils.instantiateClass(RedisUtil.class);
+    public final PubSubMessageListener pubSubMessageListener = new PubSubMessageListener();
+
+    public final List<UUID> players = new ArrayList<>();
+    public final List<String> serverNames = new ArrayList<>();
+
+    public RedisFixture() throws Exception {
+        server = RedisServer.newRedisServer().start();
+
+        connectionFactory = new LettuceConnectionFactory(server.getHost(), server.getBindPort());
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new CustomRedisTemplate();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashValueSerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+
+        for (int i = 0; i < SERVERS; i++) {
+            serverNames.add("server" + i);
+        }
+
+        wire();
+    }
+
+    private void wire() throws Exception {
+        ServerInformation serverInformation = stub(ServerInformation.class);
+        when(serverInformation.getServerName()).thenReturn(PROXY);
+
+        ProxyServer proxy = proxy(serverNames);
+
+        RedisBungee plugin = stub(RedisBungee.class);
+        when(plugin.getProxy()).thenReturn(proxy);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("RedisBungee"));
+
+        ReflectionTestUtils.setField(configuration, "publishBatchMillis", 0);
+        ReflectionTestUtils.setField(configuration, "playerCacheSpec", RedisBungeeConfiguration.DEFAULT_CACHE_SPEC);
+
+        RedisBungeeAPI api = new RedisBungeeAPI();
+        ReflectionTestUtils.setField(api, "serverInformation", serverInformation);
+        ReflectionTestUtils.setField(api, "metrics", metrics);
+        ApplicationContext context = stub(ApplicationContext.class);
+        when(context.getBean(RedisBungeeAPI.class)).thenReturn(api);
+        ReflectionTestUtils.setField(RedisBungee.class, "context", context);
+
+        Map<String, Object> beans = new HashMap<>();
+        beans.put("plugin", plugin);
+        beans.put("configuration", configuration);
+        beans.put("serverInformation", serverInformation);
+        beans.put("redisTemplate", redisTemplate);
+        beans.put("coreTemplate", redisTemplate);
+        beans.put("hashOperations", redisTemplate.opsForHash());
+        beans.put("setOperations", redisTemplate.opsForSet());
+        beans.put("valueOperations", redisTemplate.opsForValue());
+        beans.put("gson", new Gson());
+        beans.put("metrics", metrics);
+        beans.put("serverNameRegistry", serverNameRegistry);
+        beans.put("codec", codec);
+        beans.put("dataMessageCodec", codec);
+        beans.put("dataMessagePublisher", publisher);
+        beans.put("serverManager", serverManager);
+        beans.put("playerReplica", playerReplica);
+        beans.put("cachedDataManager", cachedDataManager);
+        beans.put("serverPlayersIndex", serverPlayersIndex);
+        beans.put("onlinePlayersIndex", onlinePlayersIndex);
+        beans.put("uuidTranslator", uuidTranslator);
+        beans.put("uuidMemberCodec", uuidMemberCodec);
+        beans.put("redisKeys", redisKeys);
+        beans.put("readRouter", readRouter);
+        beans.put("loginPlayerScript", script("login_player"));
+        beans.put("createPlayersScript", script("create_players"));
+        beans.put("switchServerScript", script("switch_server"));
+        beans.put("cleanUpPlayerScript", script("cleanup_player"));
+        beans.put("releasePlayerScript", script("release_player", List.class));
+        beans.put("recountPlayersScript", script("recount_players"));
+        beans.put("convertMembersScript", script("convert_members"));
+        beans.put("scanMembersScript", script("scan_members", List.class));
+        beans.put("findMembersScript", script("find_members", List.class));
+        beans.put("cleanUpProxyScript", script("cleanup_proxy", List.class));
+        beans.put("heartbeatScript", script("heartbeat", List.class));
+
+        Map<String, RedisScript<?>> scripts = new HashMap<>();
+        for (Map.Entry<String, Object> bean : beans.entrySet()) {
+            if (bean.getValue() instanceof RedisScript)
+                scripts.put(bean.getKey(), (RedisScript<?>) bean.getValue());
+        }
+        beans.put("scripts", scripts);
+        beans.put("scriptRegistry", scriptRegistry);
+
+        for (Object component : new Object[]{serverNameRegistry, codec, publisher, serverManager, playerReplica,
+                cachedDataManager, serverPlayersIndex, onlinePlayersIndex, playerManager, uuidTranslator, uuidMemberCodec, redisUtil,
+                pubSubMessageListener, scriptRegistry, redisKeys, readRouter}) {
+            inject(component, beans);
+        }
+        scriptRegistry.afterPropertiesSet();
+        readRouter.afterPropertiesSet();
+        cachedDataManager.afterPropertiesSet();
+    }
+
+    /**
+     * Sets every field of the component that has a bean of the same name, the way Spring would autowire it.
+     */
+    private static void inject(Object component, Map<String, Object> beans) {
+        for (Class<?> type = component.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (java.lang.reflect.Field field : type.getDeclaredFields()) {
+                Object bean = beans.get(field.getName());
+                if (bean != null && field.getType().isInstance(bean))
+                    ReflectionTestUtils.setField(component, field.getName(), bean);
+            }
+        }
+    }
+
+    /**
+     * BungeeCord only accepts one proxy instance per JVM, so all fixtures share it.
+     */
+    private static synchronized ProxyServer proxy(List<String> serverNames) {
+        if (ProxyServer.getInstance() != null)
+            return ProxyServer.getInstance();
+
+        Map<String, ServerInfo> servers = new LinkedHashMap<>();
+        for (String name : serverNames) {
+            ServerInfo info = stub(ServerInfo.class);
+            when(info.getName()).thenReturn(name);
+            servers.put(name, info);
+        }
+
+        ProxyConfig config = stub(ProxyConfig.class);
+        when(config.isOnlineMode()).thenReturn(true);
+
+        ProxyServer proxy = stub(ProxyServer.class);
+        when(proxy.getServers()).thenReturn(servers);
+        when(proxy.getConfig()).thenReturn(config);
+        when(proxy.getPluginManager()).thenReturn(stub(PluginManager.class));
+        when(proxy.getScheduler()).thenReturn(stub(TaskScheduler.class));
+        ProxyServer.setInstance(proxy);
+        return proxy;
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private static RedisScript<Long> script(String name) {
+        return script(name, Long.class);
+    }
+
+    private static <T> RedisScript<T> script(String name, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/" + name + ".lua")));
+        script.setResultType(resultType);
+        return script;
+    }
+
+    /**
+     * Registers the proxies as alive and spreads {@code count} players over them and the servers, with
+     * their UUID cache entries.
+     */
+    public void seed(int count) {
+        // The same clock HeartbeatTask uses.
+        final long now = redisTemplate.execute(RedisConnection::time);
+        final List<UUID> seeded = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            seeded.add(UUID.randomUUID());
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String proxy : PROXIES) {
+                    ops.<String, String>opsForHash().put(redisKeys.heartbeats(), proxy, String.valueOf(now));
+                }
+
+                for (int i = 0; i < seeded.size(); i++) {
+                    String uuid = seeded.get(i).toString();
+                    String proxy = PROXIES[i % PROXIES.length];
+                    String server = serverNames.get(i % serverNames.size());
+
+                    Map<String, String> record = new HashMap<>();
+                    record.put("online", "0");
+                    record.put("ip", "10.0." + (i >> 8 & 0xFF) + "." + (i & 0xFF));
+                    record.put("proxy", proxy);
+                    record.put("server", server);
+                    record.put("name", name(i));
+                    ops.<String, String>opsForHash().putAll(redisKeys.player(seeded.get(i)), record);
+                    ops.opsForSet().add(redisKeys.proxyPlayers(proxy), uuid);
+                    ops.opsForSet().add(redisKeys.serverPlayers(server), uuid);
+                    ops.<String, String>opsForHash().increment(redisKeys.proxyCounts(), proxy, 1);
+                    ops.<String, String>opsForHash().increment(redisKeys.serverCounts(), server, 1);
+                }
+                return null;
+            }
+        });
+
+        for (int i = 0; i < seeded.size(); i++) {
+            uuidTranslator.persistInfo(name(i), seeded.get(i));
+        }
+        players.addAll(seeded);
+        serverManager.updateServerIds();
+    }
+
+    /**
+     * Switches this proxy to binary set members and converts the seeded players, as /rconvertuuids does.
+     *
+     * @return the number of members converted
+     */
+    public long useBinaryUuids() {
+        ReflectionTestUtils.setField(configuration, "binaryUuids", true);
+        long converted = 0;
+        for (String proxy : PROXIES) {
+            converted += uuidMemberCodec.convert(redisKeys.proxyPlayers(proxy));
+        }
+        for (String server : serverNames) {
+            converted += uuidMemberCodec.convert(redisKeys.serverPlayers(server));
+        }
+        return converted;
+    }
+
+    public static String name(int i) {
+        return "Player" + i;
+    }
+
+    public PendingConnection connection(UUID uuid, String name) {
+        PendingConnection connection = stub(PendingConnection.class);
+        when(connection.getUniqueId()).thenReturn(uuid);
+        when(connection.getName()).thenReturn(name);
+        when(connection.getAddress()).thenReturn(new InetSocketAddress("10.1.2.3", 25565));
+        return connection;
+    }
+
+    public ProxiedPlayer player(UUID uuid, String name, String serverName) {
+        PendingConnection connection = connection(uuid, name);
+        ServerInfo info = ProxyServer.getInstance().getServers().get(serverName);
+        Server server = stub(Server.class);
+        when(server.getInfo()).thenReturn(info);
+
+        ProxiedPlayer player = stub(ProxiedPlayer.class);
+        when(player.getUniqueId()).thenReturn(uuid);
+        when(player.getName()).thenReturn(name);
+        when(player.getPendingConnection()).thenReturn(connection);
+        when(player.getServer()).thenReturn(server);
+        return player;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+}
@@ -0,0 +1,80 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import net.md_5.bungee.api.connection.PendingConnection;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the player state transitions of {@link com.imaginarycode.minecraft.redisbungee.RedisUtil}, each as
+ * a pair that leaves Redis as it found it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisUtilBenchmark {
+
+    private static final int POOL = 64;
+
+    @Param({"1000"})
+    public int players;
+
+    private RedisFixture fixture;
+    private UUID[] uuids = new UUID[POOL];
+    private PendingConnection[] connections = new PendingConnection[POOL];
+    private ProxiedPlayer[] proxiedPlayers = new ProxiedPlayer[POOL];
+    private String[] cacheEntries = new String[POOL];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new RedisFixture();
+        fixture.seed(players);
+        for (int i = 0; i < POOL; i++) {
+            uuids[i] = UUID.randomUUID();
+            String name = "Joining" + i;
+            connections[i] = fixture.connection(uuids[i], name);
+            proxiedPlayers[i] = fixture.player(uuids[i], name, fixture.serverNames.get(i % fixture.serverNames.size()));
+            cacheEntries[i] = fixture.uuidTranslator.cacheInfo(name, uuids[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = (next + 1) % POOL;
+        return index;
+    }
+
+    @Benchmark
+    public boolean loginAndCleanUp() {
+        int i = nextIndex();
+        boolean loggedIn = fixture.redisUtil.loginPlayer(connections[i], cacheEntries[i]);
+        fixture.redisUtil.cleanUpPlayer(uuids[i], null);
+        return loggedIn;
+    }
+
+    @Benchmark
+    public void createAndCleanUp() {
+        int i = nextIndex();
+        fixture.redisUtil.createPlayers(Collections.singletonList(proxiedPlayers[i]));
+        fixture.redisUtil.cleanUpPlayer(uuids[i], proxiedPlayers[i].getServer().getInfo().getName());
+    }
+
+    @Benchmark
+    public void switchServerTwice() {
+        UUID uuid = fixture.players.get(nextIndex());
+        fixture.redisUtil.switchServer(uuid, null, "server0");
+        fixture.redisUtil.switchServer(uuid, "server0", "server1");
+    }
+}
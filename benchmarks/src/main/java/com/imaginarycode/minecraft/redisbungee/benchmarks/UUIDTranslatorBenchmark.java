@@ -0,0 +1,63 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures name to UUID translation, answered from the local map and from the {@code uuid-cache} hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UUIDTranslatorBenchmark {
+
+    @Param({"1000"})
+    public int players;
+
+    private RedisFixture fixture;
+    private String[] names;
+    private Map<String, ?> nameToUuidMap;
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        fixture = new RedisFixture();
+        fixture.seed(players);
+        names = new String[players];
+        for (int i = 0; i < players; i++) {
+            names[i] = RedisFixture.name(i);
+        }
+        nameToUuidMap = (Map<String, ?>) ReflectionTestUtils.getField(fixture.uuidTranslator, "nameToUuidMap");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    private String nextName() {
+        String name = names[next];
+        next = (next + 1) % names.length;
+        return name;
+    }
+
+    @Benchmark
+    public UUID getTranslatedUuidCached() {
+        return fixture.uuidTranslator.getTranslatedUuid(nextName(), false);
+    }
+
+    @Benchmark
+    public UUID getTranslatedUuidFromRedis() {
+        String name = nextName();
+        nameToUuidMap.remove(name.toLowerCase());
+        return fixture.uuidTranslator.getTranslatedUuid(name, false);
+    }
+}
@@ -0,0 +1,102 @@
+package com.imaginarycode.minecraft.redisbungee.benchmarks;
+
+import com.google.common.collect.ImmutableSet;
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link CompactUuidSet} with the Guava sets it replaced: building a set from the members Redis returns,
+ * and looking players up in it. Run with {@code -prof gc} to see the allocations per build. The heap retained by
+ * one set of each kind is printed when a trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UuidSetBenchmark {
+
+    @Param({"10000", "50000", "100000"})
+    public int players;
+
+    private List<String> members;
+    private UUID[] lookups;
+    private Set<UUID> guava;
+    private Set<UUID> compact;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        members = new ArrayList<>(players);
+        lookups = new UUID[1024];
+        for (int i = 0; i < players; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            members.add(uuid.toString());
+            // Half of the lookups miss.
+            if (i < lookups.length)
+                lookups[i] = i % 2 == 0 ? uuid : UUID.randomUUID();
+        }
+
+        guava = buildImmutableSet();
+        compact = buildCompactSet();
+        System.out.println();
+        System.out.println("Retained by ImmutableSet: " + retainedBytes(this::buildImmutableSet) + " bytes");
+        System.out.println("Retained by CompactUuidSet: " + retainedBytes(this::buildCompactSet) + " bytes");
+    }
+
+    private static long retainedBytes(Supplier<Set<UUID>> build) {
+        long before = usedHeap();
+        Set<UUID> set = build.get();
+        long retained = usedHeap() - before;
+        // Keep the set reachable until it was measured.
+        return set.isEmpty() ? 0 : retained;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private UUID nextLookup() {
+        UUID uuid = lookups[next];
+        next = (next + 1) % lookups.length;
+        return uuid;
+    }
+
+    @Benchmark
+    public Set<UUID> buildImmutableSet() {
+        ImmutableSet.Builder<UUID> builder = ImmutableSet.builder();
+        for (String member : members) {
+            builder.add(UUID.fromString(member));
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public Set<UUID> buildCompactSet() {
+        return CompactUuidSet.fromStrings(members);
+    }
+
+    @Benchmark
+    public boolean containsImmutableSet() {
+        return guava.contains(nextLookup());
+    }
+
+    @Benchmark
+    public boolean containsCompactSet() {
+        return compact.contains(nextLookup());
+    }
+}
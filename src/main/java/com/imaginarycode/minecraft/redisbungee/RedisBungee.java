@@ -45,7 +45,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 /**
  * The RedisBungee plugin.
  * <p>
- * The only function of interest is {@link #getApi()}, which exposes some functions in this class.
+ * The only functions of interest are {@link #getApi()} and {@link #getAsyncApi()}, which expose some functions in this class.
  */
 public final class RedisBungee extends Plugin implements Listener {
 
@@ -55,6 +55,14 @@ public final class RedisBungee extends Plugin implements Listener {
 		return context.getBean(RedisBungeeAPI.class);
 	}
 
+	/**
+	 * @return the API for lookups that must not block the calling thread, running the blocking ones on a thread pool
+	 * @since 0.3.10
+	 */
+	public static RedisBungeeAsyncAPI getAsyncApi() {
+		return context.getBean(RedisBungeeAsyncAPI.class);
+	}
+
 	@Override
 	public void onEnable() {
 		getProxy().getPluginManager().registerListener(this, this);
@@ -94,6 +102,7 @@ public final class RedisBungee extends Plugin implements Listener {
 		getProxy().getPluginManager().registerCommand(this, new RedisBungeeCommands.PlayerProxyCommand());
 		getProxy().getPluginManager().registerCommand(this, new RedisBungeeCommands.PlistCommand());
 		getProxy().getPluginManager().registerCommand(this, new RedisBungeeCommands.DebugCommand());
+		getProxy().getPluginManager().registerCommand(this, new RedisBungeeCommands.ConvertUuidsCommand());
 
 	}
 }
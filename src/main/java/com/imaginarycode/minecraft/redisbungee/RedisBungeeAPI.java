@@ -2,12 +2,16 @@ package com.imaginarycode.minecraft.redisbungee;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
 import com.imaginarycode.minecraft.redisbungee.manager.MessageListenerManager;
 import com.imaginarycode.minecraft.redisbungee.manager.PlayerManager;
+import com.imaginarycode.minecraft.redisbungee.manager.PlayerRecord;
 import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher;
 import com.imaginarycode.minecraft.redisbungee.pubsub.RedisBungeeReceiverConfiguration;
 import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDTranslator;
 
@@ -50,6 +54,9 @@ public class RedisBungeeAPI implements InitializingBean {
 	@Autowired
 	private MessageListenerManager messageListenerManager;
 
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
 	private List<String> reservedChannels;
 
 	@Override
@@ -57,7 +64,8 @@ public class RedisBungeeAPI implements InitializingBean {
 		reservedChannels = ImmutableList.of(
 				"redisbungee-allservers",
 				"redisbungee-" + serverInformation.getServerName(),
-				"redisbungee-data"
+				DataMessagePublisher.DATA_CHANNEL,
+				DataMessagePublisher.BINARY_DATA_CHANNEL
 		);
 	}
 
@@ -96,7 +104,7 @@ public class RedisBungeeAPI implements InitializingBean {
 	/**
 	 * Get a combined list of players on this network.
 	 * <p>
-	 * <strong>Note that this function returns an instance of {@link com.google.common.collect.ImmutableSet}.</strong>
+	 * <strong>Note that this function returns an immutable Set.</strong>
 	 *
 	 * @return a Set with all players found
 	 */
@@ -112,11 +120,7 @@ public class RedisBungeeAPI implements InitializingBean {
 	 * @since 0.3
 	 */
 	public final Collection<String> getHumanPlayersOnline() {
-		Set<String> names = new HashSet<>();
-		for (UUID uuid : getPlayersOnline()) {
-			names.add(getNameFromUuid(uuid, false));
-		}
-		return names;
+		return new HashSet<>(getNamesFromUuids(getPlayersOnline(), false).values());
 	}
 
 	/**
@@ -139,6 +143,30 @@ public class RedisBungeeAPI implements InitializingBean {
 		return ImmutableSet.copyOf(getServerToPlayers().get(server));
 	}
 
+	/**
+	 * Get the number of players on the server with the given name. Unlike {@link #getPlayersOnServer(String)}
+	 * this only reads a counter.
+	 *
+	 * @param server a server name
+	 * @return the number of players on this server
+	 * @since 0.3.10
+	 */
+	public final int getPlayerCountOnServer(@NonNull String server) {
+		return playerManager.getPlayerCountOnServer(server);
+	}
+
+	/**
+	 * Get the number of players on the specified proxy. Unlike {@link #getPlayersOnProxy(String)} this only
+	 * reads a counter.
+	 *
+	 * @param proxy a proxy ID
+	 * @return the number of players on this proxy
+	 * @since 0.3.10
+	 */
+	public final int getPlayerCountOnProxy(@NonNull String proxy) {
+		return playerManager.getPlayerCountOnProxy(proxy);
+	}
+
 	/**
 	 * Get a list of players on the specified proxy.
 	 *
@@ -181,6 +209,75 @@ public class RedisBungeeAPI implements InitializingBean {
 		return cachedDataManager.getProxy(player);
 	}
 
+	/**
+	 * Get the last time each of the given players was on, as {@link #getLastOnline(UUID)} does. Unlike calling it in a
+	 * loop, this fetches all players that are not cached in a single round trip to Redis.
+	 *
+	 * @param players the players to look up
+	 * @return the last time each player was on, 0 if they are online and -1 if they were never seen
+	 * @since 0.3.10
+	 */
+	public final Map<UUID, Long> getLastOnline(@NonNull Collection<UUID> players) {
+		ImmutableMap.Builder<UUID, Long> lastOnline = ImmutableMap.builder();
+		for (Map.Entry<UUID, PlayerRecord> entry : cachedDataManager.getRecords(players).entrySet()) {
+			lastOnline.put(entry.getKey(), entry.getValue().getLastOnline());
+		}
+		return lastOnline.build();
+	}
+
+	/**
+	 * Get the servers the given players are playing on, as {@link #getServerFor(UUID)} does. Unlike calling it in a
+	 * loop, this fetches all players that are not cached in a single round trip to Redis.
+	 *
+	 * @param players the players to look up
+	 * @return the server of each player that is online and connected to a server
+	 * @since 0.3.10
+	 */
+	public final Map<UUID, ServerInfo> getServersFor(@NonNull Collection<UUID> players) {
+		ImmutableMap.Builder<UUID, ServerInfo> servers = ImmutableMap.builder();
+		for (Map.Entry<UUID, PlayerRecord> entry : cachedDataManager.getRecords(players).entrySet()) {
+			String server = entry.getValue().getServer();
+			ServerInfo info = server != null ? ProxyServer.getInstance().getServerInfo(server) : null;
+			if (info != null)
+				servers.put(entry.getKey(), info);
+		}
+		return servers.build();
+	}
+
+	/**
+	 * Get the {@link java.net.InetAddress} of each of the given players, as {@link #getPlayerIp(UUID)} does. Unlike
+	 * calling it in a loop, this fetches all players that are not cached in a single round trip to Redis.
+	 *
+	 * @param players the players to look up
+	 * @return the address of each player that is online
+	 * @since 0.3.10
+	 */
+	public final Map<UUID, InetAddress> getPlayerIps(@NonNull Collection<UUID> players) {
+		ImmutableMap.Builder<UUID, InetAddress> addresses = ImmutableMap.builder();
+		for (Map.Entry<UUID, PlayerRecord> entry : cachedDataManager.getRecords(players).entrySet()) {
+			if (entry.getValue().getAddress() != null)
+				addresses.put(entry.getKey(), entry.getValue().getAddress());
+		}
+		return addresses.build();
+	}
+
+	/**
+	 * Get the RedisBungee proxy IDs the given players are connected to, as {@link #getProxy(UUID)} does. Unlike
+	 * calling it in a loop, this fetches all players that are not cached in a single round trip to Redis.
+	 *
+	 * @param players the players to look up
+	 * @return the proxy of each player that is online
+	 * @since 0.3.10
+	 */
+	public final Map<UUID, String> getProxies(@NonNull Collection<UUID> players) {
+		ImmutableMap.Builder<UUID, String> proxies = ImmutableMap.builder();
+		for (Map.Entry<UUID, PlayerRecord> entry : cachedDataManager.getRecords(players).entrySet()) {
+			if (entry.getValue().getProxy() != null)
+				proxies.put(entry.getKey(), entry.getValue().getProxy());
+		}
+		return proxies.build();
+	}
+
 	/**
 	 * Sends a proxy command to all proxies.
 	 *
@@ -327,4 +424,46 @@ public class RedisBungeeAPI implements InitializingBean {
 	public final UUID getUuidFromName(@NonNull String name, boolean expensiveLookups) {
 		return uuidTranslator.getTranslatedUuid(name, expensiveLookups);
 	}
+
+	/**
+	 * Fetch the names of many UUIDs at once. UUIDs that are not cached locally are read from Redis in a single round
+	 * trip. This function falls back to Mojang as a last resort if {@code expensiveLookups} is true, so calls
+	 * <strong>may</strong> be blocking.
+	 *
+	 * @param uuids            the UUIDs to fetch the names for
+	 * @param expensiveLookups whether or not to perform potentially expensive lookups
+	 * @return the names of the UUIDs that could be translated
+	 * @see #getNameFromUuid(UUID, boolean)
+	 * @since 0.3.10
+	 */
+	public final Map<UUID, String> getNamesFromUuids(@NonNull Collection<UUID> uuids, boolean expensiveLookups) {
+		return ImmutableMap.copyOf(uuidTranslator.getNamesFromUuids(uuids, expensiveLookups));
+	}
+
+	/**
+	 * Fetch the UUIDs of many names at once. Names that are not cached locally are read from Redis in a single round
+	 * trip. This function falls back to Mojang as a last resort if {@code expensiveLookups} is true, so calls
+	 * <strong>may</strong> be blocking.
+	 *
+	 * @param names            the names to fetch the UUIDs for
+	 * @param expensiveLookups whether or not to perform potentially expensive lookups
+	 * @return the UUIDs of the names that could be translated, keyed by the names as given
+	 * @see #getUuidFromName(String, boolean)
+	 * @since 0.3.10
+	 */
+	public final Map<String, UUID> getUuidsFromNames(@NonNull Collection<String> names, boolean expensiveLookups) {
+		return ImmutableMap.copyOf(uuidTranslator.getTranslatedUuids(names, expensiveLookups));
+	}
+
+	/**
+	 * Get RedisBungee's metrics, which describe how much Redis work each API method and listener causes. Register a
+	 * {@link com.imaginarycode.minecraft.redisbungee.metrics.MetricsReporter} on them to export them to your
+	 * monitoring system.
+	 *
+	 * @return the metrics of this proxy
+	 * @since 0.3.10
+	 */
+	public final RedisBungeeMetrics getMetrics() {
+		return metrics;
+	}
 }
@@ -0,0 +1,224 @@
+package com.imaginarycode.minecraft.redisbungee;
+
+import com.google.common.collect.Multimap;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
+import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDTranslator;
+
+import lombok.NonNull;
+import net.md_5.bungee.api.config.ServerInfo;
+
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * The lookups of {@link RedisBungeeAPI}, for callers that must not block, such as event handlers running on network
+ * threads. You obtain an instance of this object by invoking {@link RedisBungee#getAsyncApi()}.
+ * <p>
+ * This is a facade over the blocking {@link RedisBungeeAPI}, not a non-blocking client: Spring Data Redis 1.7 and
+ * Jedis only offer blocking connections, so every lookup that has to reach Redis still occupies a thread of
+ * RedisBungee's thread pool for its whole round trip. What callers gain is that their own thread is not blocked;
+ * Redis throughput is the same as with {@link RedisBungeeAPI}.
+ * <p>
+ * Lookups that can be answered from memory, like those of players on this proxy or of cached players, complete
+ * before the method returns. All others are run on the thread pool, so callbacks attached to the returned futures
+ * may run there as well. Errors complete the future exceptionally.
+ *
+ * @since 0.3.10
+ */
+@Service
+public class RedisBungeeAsyncAPI implements InitializingBean {
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private RedisBungeeAPI api;
+
+	@Autowired
+	private CachedDataManager cachedDataManager;
+
+	@Autowired
+	private UUIDTranslator uuidTranslator;
+
+	private Executor executor;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		executor = task -> plugin.getProxy().getScheduler().runAsync(plugin, task);
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayerCount()
+	 */
+	public final CompletableFuture<Integer> getPlayerCount() {
+		return supply(false, api::getPlayerCount);
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getLastOnline(UUID)
+	 */
+	public final CompletableFuture<Long> getLastOnline(@NonNull UUID player) {
+		return supply(cachedDataManager.isCached(player), () -> api.getLastOnline(player));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getLastOnline(Collection)
+	 */
+	public final CompletableFuture<Map<UUID, Long>> getLastOnline(@NonNull Collection<UUID> players) {
+		return supply(isCached(players), () -> api.getLastOnline(players));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getServerFor(UUID)
+	 */
+	public final CompletableFuture<ServerInfo> getServerFor(@NonNull UUID player) {
+		return supply(cachedDataManager.isCached(player), () -> api.getServerFor(player));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getServersFor(Collection)
+	 */
+	public final CompletableFuture<Map<UUID, ServerInfo>> getServersFor(@NonNull Collection<UUID> players) {
+		return supply(isCached(players), () -> api.getServersFor(players));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayersOnline()
+	 */
+	public final CompletableFuture<Set<UUID>> getPlayersOnline() {
+		return supply(false, api::getPlayersOnline);
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getHumanPlayersOnline()
+	 */
+	public final CompletableFuture<Collection<String>> getHumanPlayersOnline() {
+		return supply(false, api::getHumanPlayersOnline);
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getServerToPlayers()
+	 */
+	public final CompletableFuture<Multimap<String, UUID>> getServerToPlayers() {
+		return supply(false, api::getServerToPlayers);
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayersOnServer(String)
+	 */
+	public final CompletableFuture<Set<UUID>> getPlayersOnServer(@NonNull String server) {
+		return supply(false, () -> api.getPlayersOnServer(server));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayerCountOnServer(String)
+	 */
+	public final CompletableFuture<Integer> getPlayerCountOnServer(@NonNull String server) {
+		return supply(false, () -> api.getPlayerCountOnServer(server));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayerCountOnProxy(String)
+	 */
+	public final CompletableFuture<Integer> getPlayerCountOnProxy(@NonNull String proxy) {
+		return supply(false, () -> api.getPlayerCountOnProxy(proxy));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayersOnProxy(String)
+	 */
+	public final CompletableFuture<Set<UUID>> getPlayersOnProxy(@NonNull String proxy) {
+		return supply(false, () -> api.getPlayersOnProxy(proxy));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#isPlayerOnline(UUID)
+	 */
+	public final CompletableFuture<Boolean> isPlayerOnline(@NonNull UUID player) {
+		return getLastOnline(player).thenApply(lastOnline -> lastOnline == 0);
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayerIp(UUID)
+	 */
+	public final CompletableFuture<InetAddress> getPlayerIp(@NonNull UUID player) {
+		return supply(cachedDataManager.isCached(player), () -> api.getPlayerIp(player));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getPlayerIps(Collection)
+	 */
+	public final CompletableFuture<Map<UUID, InetAddress>> getPlayerIps(@NonNull Collection<UUID> players) {
+		return supply(isCached(players), () -> api.getPlayerIps(players));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getProxy(UUID)
+	 */
+	public final CompletableFuture<String> getProxy(@NonNull UUID player) {
+		return supply(cachedDataManager.isCached(player), () -> api.getProxy(player));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getProxies(Collection)
+	 */
+	public final CompletableFuture<Map<UUID, String>> getProxies(@NonNull Collection<UUID> players) {
+		return supply(isCached(players), () -> api.getProxies(players));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getNameFromUuid(UUID, boolean)
+	 */
+	public final CompletableFuture<String> getNameFromUuid(@NonNull UUID uuid, boolean expensiveLookups) {
+		return supply(uuidTranslator.isCached(uuid), () -> api.getNameFromUuid(uuid, expensiveLookups));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getNamesFromUuids(Collection, boolean)
+	 */
+	public final CompletableFuture<Map<UUID, String>> getNamesFromUuids(@NonNull Collection<UUID> uuids, boolean expensiveLookups) {
+		return supply(false, () -> api.getNamesFromUuids(uuids, expensiveLookups));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getUuidFromName(String, boolean)
+	 */
+	public final CompletableFuture<UUID> getUuidFromName(@NonNull String name, boolean expensiveLookups) {
+		return supply(uuidTranslator.isCached(name), () -> api.getUuidFromName(name, expensiveLookups));
+	}
+
+	/**
+	 * @see RedisBungeeAPI#getUuidsFromNames(Collection, boolean)
+	 */
+	public final CompletableFuture<Map<String, UUID>> getUuidsFromNames(@NonNull Collection<String> names, boolean expensiveLookups) {
+		return supply(false, () -> api.getUuidsFromNames(names, expensiveLookups));
+	}
+
+	private boolean isCached(Collection<UUID> players) {
+		for (UUID player : players) {
+			if (!cachedDataManager.isCached(player))
+				return false;
+		}
+		return true;
+	}
+
+	private <T> CompletableFuture<T> supply(boolean cached, Supplier<T> lookup) {
+		if (!cached)
+			return CompletableFuture.supplyAsync(lookup, executor);
+
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			future.complete(lookup.get());
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+}
@@ -1,9 +1,14 @@
 package com.imaginarycode.minecraft.redisbungee;
 
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.LatencyHistogram;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
 import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDTranslator;
 
 import de.pesacraft.bungee.core.server.ServerInformation;
@@ -408,24 +413,98 @@ class RedisBungeeCommands {
 		}
 	}
 
+	@Configurable
+	public static class ConvertUuidsCommand extends Command {
+
+		@Autowired
+		private RedisBungee plugin;
+
+		@Autowired
+		private RedisBungeeConfiguration configuration;
+
+		@Autowired
+		private ServerManager serverManager;
+
+		@Autowired
+		private UuidMemberCodec uuidMemberCodec;
+
+		@Autowired
+		private RedisKeys redisKeys;
+
+		ConvertUuidsCommand() {
+			super("rconvertuuids", "redisbungee.command.convertuuids");
+		}
+
+		@Override
+		public void execute(final CommandSender sender, final String[] args) {
+			ProxyServer.getInstance().getScheduler().runAsync(plugin, new Runnable() {
+				@Override
+				public void run() {
+					long converted = 0;
+					for (String proxy : serverManager.getServerIds()) {
+						converted += uuidMemberCodec.convert(redisKeys.proxyPlayers(proxy));
+					}
+					for (String server : ProxyServer.getInstance().getServers().keySet()) {
+						converted += uuidMemberCodec.convert(redisKeys.serverPlayers(server));
+					}
+					sender.sendMessage(new ComponentBuilder("Converted " + converted + " players to "
+							+ (configuration.isBinaryUuids() ? "binary" : "textual") + " UUIDs.").color(ChatColor.GREEN).create());
+				}
+			});
+		}
+	}
+
+	@Configurable
 	public static class DebugCommand extends Command {
 
+		@Autowired
+		private RedisBungeeMetrics metrics;
+
 		DebugCommand() {
 			super("rdebug", "redisbungee.command.debug");
 		}
 
 		@Override
 		public void execute(final CommandSender sender, final String[] args) {
-			/*TextComponent poolActiveStat = new TextComponent("Currently active pool objects: " + plugin.getPool().getNumActive());
-			TextComponent poolIdleStat = new TextComponent("Currently idle pool objects: " + plugin.getPool().getNumIdle());
-			TextComponent poolWaitingStat = new TextComponent("Waiting on free objects: " + plugin.getPool().getNumWaiters());
-			sender.sendMessage(poolActiveStat);
-			sender.sendMessage(poolIdleStat);
-			sender.sendMessage(poolWaitingStat);*/
-			TextComponent textComponent = new TextComponent("THERE IS NO DEBUG INFORMATION AVAILABLE!");
-			textComponent.setBold(true);
-			textComponent.setColor(ChatColor.RED);
-			sender.sendMessage(textComponent);
+			// Only metrics starting with the argument, if there is one.
+			String prefix = args.length >= 1 ? args[0] : "";
+
+			sender.sendMessage(new ComponentBuilder("Latencies (count, mean, 99th percentile, max):").color(ChatColor.YELLOW).create());
+			for (Map.Entry<String, LatencyHistogram> entry : metrics.getHistograms().entrySet()) {
+				if (!entry.getKey().startsWith(prefix))
+					continue;
+				LatencyHistogram histogram = entry.getValue();
+				sendMetric(sender, entry.getKey(), histogram.getCount() + ", " + formatMicros(histogram.getMeanMicros()) + ", "
+						+ formatMicros(histogram.getPercentileMicros(99)) + ", " + formatMicros(histogram.getMaxMicros()));
+			}
+
+			sender.sendMessage(new ComponentBuilder("Caches (hit rate, hits, misses, evictions):").color(ChatColor.YELLOW).create());
+			for (Map.Entry<String, CacheStats> entry : metrics.getCacheStats().entrySet()) {
+				if (!("cache." + entry.getKey()).startsWith(prefix))
+					continue;
+				CacheStats stats = entry.getValue();
+				sendMetric(sender, entry.getKey(), String.format("%.1f%%, %d, %d, %d",
+						stats.hitRate() * 100, stats.hitCount(), stats.missCount(), stats.evictionCount()));
+			}
+
+			sender.sendMessage(new ComponentBuilder("Gauges and counters:").color(ChatColor.YELLOW).create());
+			for (Map.Entry<String, Long> entry : metrics.getGauges().entrySet()) {
+				if (entry.getKey().startsWith(prefix))
+					sendMetric(sender, entry.getKey(), String.valueOf(entry.getValue()));
+			}
+			for (Map.Entry<String, Long> entry : metrics.getCounters().entrySet()) {
+				if (entry.getKey().startsWith(prefix))
+					sendMetric(sender, entry.getKey(), String.valueOf(entry.getValue()));
+			}
+		}
+
+		private static void sendMetric(CommandSender sender, String name, String value) {
+			sender.sendMessage(new ComponentBuilder(name + ": ").color(ChatColor.GRAY)
+					.append(value).color(ChatColor.WHITE).create());
+		}
+
+		private static String formatMicros(long micros) {
+			return micros >= 10000 ? micros / 1000 + "ms" : micros + "us";
 		}
 	}
 }
@@ -13,10 +13,139 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class RedisBungeeConfiguration {
 
+	/**
+	 * The default specification of the player data cache.
+	 */
+	public static final String DEFAULT_CACHE_SPEC = "maximumSize=10000,expireAfterWrite=1h,refreshAfterWrite=1m";
+
 	@Getter
 	@Value("${redisbungee.registerBungeeCommands}")
 	private boolean registerBungeeCommands;
 
+	/**
+	 * Whether the network player table should be replicated into memory, so that
+	 * lookups for remote players are served without a Redis round trip.
+	 */
+	@Getter
+	@Value("${redisbungee.replicatedMode:false}")
+	private boolean replicatedMode;
+
+	/**
+	 * How long data messages are held back to be published together with the messages that follow, in
+	 * milliseconds. 0 publishes every message on its own.
+	 */
+	@Getter
+	@Value("${redisbungee.publishBatchMillis:5}")
+	private int publishBatchMillis;
+
+	/**
+	 * The number of threads handling incoming pub/sub messages. Messages concerning the same player are
+	 * always handled by the same thread.
+	 */
+	@Getter
+	@Value("${redisbungee.dispatcherThreads:4}")
+	private int dispatcherThreads;
+
+	/**
+	 * How many messages each dispatcher thread may have waiting before the subscriber has to wait for it.
+	 */
+	@Getter
+	@Value("${redisbungee.dispatcherQueueSize:1024}")
+	private int dispatcherQueueSize;
+
+	/**
+	 * How often the metrics are handed to the registered {@link com.imaginarycode.minecraft.redisbungee.metrics.MetricsReporter}s,
+	 * in seconds. 0 disables reporting, the metrics are still shown by /rdebug.
+	 */
+	@Getter
+	@Value("${redisbungee.metricsReportSeconds:60}")
+	private int metricsReportSeconds;
+
+	/**
+	 * Specification of the cache for the server, proxy, IP address and last online time of remote players, in the
+	 * format of Guava's {@link com.google.common.cache.CacheBuilderSpec}. Entries older than refreshAfterWrite are
+	 * reloaded in the background while the old value is still returned.
+	 */
+	@Getter
+	@Value("${redisbungee.cache.player:" + DEFAULT_CACHE_SPEC + "}")
+	private String playerCacheSpec;
+
+	/**
+	 * Whether this proxy adds players to the proxy and server sets as 16 byte binary UUIDs instead of their 38 byte
+	 * JSON strings. Both forms are read either way, so proxies can be switched one at a time; run /rconvertuuids once
+	 * all of them are, to convert the players that are online already.
+	 */
+	@Getter
+	@Value("${redisbungee.binaryUuids:false}")
+	private boolean binaryUuids;
+
+	/**
+	 * How many players the integrity check looks at per run, both in this proxy's set in Redis and among the players
+	 * connected to this proxy. Larger sets are checked over several runs.
+	 */
+	@Getter
+	@Value("${redisbungee.integrityCheckBudget:2000}")
+	private int integrityCheckBudget;
+
+	/**
+	 * How long the proxy that cleans up after lagged proxies keeps that job without renewing it. It is renewed by each
+	 * integrity check, once a minute, so this has to be longer than a minute. If the proxy goes away, another one
+	 * takes over within this time.
+	 */
+	@Getter
+	@Value("${redisbungee.integrityLeaseSeconds:90}")
+	private int integrityLeaseSeconds;
+
+	/**
+	 * Whether each proxy keeps a {@code heartbeat:<id>} key that expires when the proxy stops renewing it. Proxies then
+	 * announce joining and leaving on a channel and are dropped when their key expires, instead of every proxy
+	 * reloading all heartbeats every 3 seconds. Works alongside proxies without it.
+	 */
+	@Getter
+	@Value("${redisbungee.livenessKeys:false}")
+	private boolean livenessKeys;
+
+	/**
+	 * Whether Redis is a Redis Cluster. The heartbeats, counters and other keys the proxies coordinate through then
+	 * share the {@code {redisbungee}} hash tag, while each proxy and server set has its own slot and player hashes and
+	 * the UUID cache are spread over the cluster. Transitions write the player hash first and then update the sets and
+	 * counters with a command per slot, see {@link RedisUtil}. Needs Jedis, and all proxies of a network have to agree
+	 * on it; the sets change their names, so they cannot switch while players are online. Expiry events are only sent
+	 * by the node holding the key, so with {@link #isLivenessKeys()} lost proxies may only be dropped by the periodic
+	 * reload of the heartbeats.
+	 * <p>
+	 * So far this mode has only been run against a single Redis node with cluster key names, not against a real
+	 * multi-node cluster.
+	 */
+	@Getter
+	@Value("${redisbungee.cluster:false}")
+	private boolean cluster;
+
+	/**
+	 * How many hashes the UUID cache is split into in cluster mode, each in its own slot. All proxies have to agree on
+	 * it; changing it leaves the entries of the old hashes behind until they are cached again.
+	 */
+	@Getter
+	@Value("${redisbungee.uuidCacheShards:16}")
+	private int uuidCacheShards;
+
+	/**
+	 * Read replicas of the primary, as {@code host:port}, for lookups that tolerate slightly stale data: player records
+	 * missing from the cache, UUID cache entries and the player sets and counters read by the API. Writes, scripts and
+	 * the check whether a player logging in is online already always go to the primary. Not used in cluster mode.
+	 */
+	@Value("${redisbungee.readReplicas:}")
+	private List<String> readReplicas;
+
+	/**
+	 * How far behind the primary a replica may be and still serve reads, in milliseconds. It is measured as the age of
+	 * the heartbeat of this proxy on the replica, which is written every 3 seconds, so a replica that keeps up shows
+	 * up to 3 seconds. Lower values are enforced all the same, but leave the replicas unused much of the time.
+	 */
+	@Getter
+	@Value("${redisbungee.replicaMaxStalenessMillis:5000}")
+	private int replicaMaxStalenessMillis;
+
 	@Value("${redisbungee.exemptAddresses}")
 	private List<String> exemptAddresses;
 
@@ -29,4 +158,17 @@ public class RedisBungeeConfiguration {
 
 		return addressBuilder.build();
 	}
+
+	public List<String> getReadReplicas() {
+		ImmutableList.Builder<String> replicaBuilder = ImmutableList.builder();
+
+		if (readReplicas != null) {
+			for (String s : readReplicas) {
+				if (!s.trim().isEmpty())
+					replicaBuilder.add(s.trim());
+			}
+		}
+
+		return replicaBuilder.build();
+	}
 }
@@ -4,9 +4,17 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.*;
 import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.imaginarycode.minecraft.redisbungee.events.PubSubMessageEvent;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.ApiCallerAspect;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.pubsub.BinaryDataReceiver;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher;
+import com.imaginarycode.minecraft.redisbungee.pubsub.MembershipReceiver;
+import com.imaginarycode.minecraft.redisbungee.pubsub.MessageDispatcher;
+import com.imaginarycode.minecraft.redisbungee.pubsub.RedisBungeeReceiverConfiguration;
 import com.imaginarycode.minecraft.redisbungee.util.*;
 import com.imaginarycode.minecraft.redisbungee.util.uuid.NameFetcher;
 import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDFetcher;
@@ -14,6 +22,8 @@ import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDTranslator;
 
 import de.pesacraft.bungee.core.PeSaCraftBungeeCore;
 import de.pesacraft.bungee.core.SpringContext;
+import de.pesacraft.bungee.core.server.ServerInformation;
+import de.pesacraft.shares.config.CustomRedisTemplate;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -34,14 +44,19 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
+import org.aspectj.lang.Aspects;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.aspectj.EnableSpringConfigured;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
@@ -55,11 +70,87 @@ import static com.google.common.base.Preconditions.checkArgument;
 @Import(SpringContext.class)
 public class RedisBungeeCore {
 
+	/**
+	 * The name of the template RedisBungee sends its own commands through, see {@link #redisBungeeTemplate}.
+	 */
+	public static final String REDIS_TEMPLATE = "redisBungeeTemplate";
+	/**
+	 * The name of the container RedisBungee receives its channels with, see {@link #redisBungeeListenerContainer}.
+	 */
+	public static final String LISTENER_CONTAINER = "redisBungeeListenerContainer";
+
 	@Bean
 	public RedisBungee redisBungee() {
 		return (RedisBungee) ProxyServer.getInstance().getPluginManager().getPlugin("RedisBungee");
 	}
 
+	/**
+	 * The core plugin's template with RedisBungee's metrics recording every command. It is a template of its own,
+	 * so the commands of other plugins sharing the core plugin's template are neither timed nor counted as
+	 * RedisBungee's. RedisBungee's components ask for it by name.
+	 */
+	@Bean(name = REDIS_TEMPLATE)
+	public CustomRedisTemplate redisBungeeTemplate(@Autowired CustomRedisTemplate redisTemplate, @Autowired RedisBungeeMetrics metrics) {
+		return metrics.instrument(redisTemplate, redisTemplate.getConnectionFactory());
+	}
+
+	/**
+	 * Receives RedisBungee's channels on a single thread, so messages are handed to the {@link MessageDispatcher}
+	 * lanes in the order Redis sent them. The core plugin's container runs every message on a thread of its own,
+	 * which could reorder the messages about a player before they reach their lane.
+	 */
+	@Bean(name = LISTENER_CONTAINER)
+	public RedisMessageListenerContainer redisBungeeListenerContainer(@Autowired CustomRedisTemplate redisTemplate,
+			@Autowired ServerInformation serverInformation, @Autowired BinaryDataReceiver binaryDataReceiver,
+			@Autowired MembershipReceiver membershipReceiver) {
+		final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("RedisBungee PubSub")
+				.build());
+		RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+			@Override
+			public void destroy() throws Exception {
+				try {
+					super.destroy();
+				} finally {
+					executor.shutdown();
+				}
+			}
+		};
+		container.setConnectionFactory(redisTemplate.getConnectionFactory());
+		container.setTaskExecutor(executor);
+
+		Map<MessageListener, Collection<? extends Topic>> listeners = new LinkedHashMap<>();
+		for (String channel : Arrays.asList("redisbungee-" + serverInformation.getServerName(), "redisbungee-allservers",
+				DataMessagePublisher.DATA_CHANNEL)) {
+			RedisBungeeReceiverConfiguration receiver = new RedisBungeeReceiverConfiguration(channel);
+			listeners.put(receiver.getMessageListener(), Collections.singleton(receiver.getTopic()));
+		}
+		listeners.put(binaryDataReceiver, Collections.singleton(binaryDataReceiver.getTopic()));
+		listeners.put(membershipReceiver, membershipReceiver.getTopics());
+		container.setMessageListeners(listeners);
+		return container;
+	}
+
+	/**
+	 * Keeps {@link #redisBungeeTemplate} and {@link #redisBungeeListenerContainer} from being autowired by type, where
+	 * they would compete with the core plugin's template and container in every plugin of the context.
+	 */
+	@Bean
+	public static BeanFactoryPostProcessor redisBungeeTemplateByNameOnly() {
+		return beanFactory -> {
+			beanFactory.getBeanDefinition(REDIS_TEMPLATE).setAutowireCandidate(false);
+			beanFactory.getBeanDefinition(LISTENER_CONTAINER).setAutowireCandidate(false);
+		};
+	}
+
+	/**
+	 * The instance of {@link ApiCallerAspect} AspectJ weaves into the API, so it gets the metrics injected.
+	 */
+	@Bean
+	public ApiCallerAspect apiCallerAspect() {
+		return Aspects.aspectOf(ApiCallerAspect.class);
+	}
+
 	@Bean
 	public Gson gson() {
 		return new Gson();
@@ -71,13 +162,99 @@ public class RedisBungeeCore {
 	}
 
 	@Bean
-	public RedisScript<Long> playerCountScript(@Autowired RedisBungee plugin) {
-		DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+	@RedisBungeeScript
+	public RedisScript<Long> createPlayersScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/create_players.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	public RedisScript<Long> loginPlayerScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/login_player.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	public RedisScript<Long> switchServerScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/switch_server.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	public RedisScript<Long> cleanUpPlayerScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/cleanup_player.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	@SuppressWarnings("rawtypes")
+	public RedisScript<List> releasePlayerScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/release_player.lua", List.class);
+	}
+
+	@Bean
+	@RedisBungeeScript
+	public RedisScript<Long> recountPlayersScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/recount_players.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	public RedisScript<Long> convertMembersScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/convert_members.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	@SuppressWarnings("rawtypes")
+	public RedisScript<List> scanMembersScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/scan_members.lua", List.class);
+	}
+
+	@Bean
+	@RedisBungeeScript
+	@SuppressWarnings("rawtypes")
+	public RedisScript<List> findMembersScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/find_members.lua", List.class);
+	}
+
+	@Bean
+	@RedisBungeeScript
+	@SuppressWarnings("rawtypes")
+	public RedisScript<List> cleanUpProxyScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/cleanup_proxy.lua", List.class);
+	}
+
+	@Bean
+	@RedisBungeeScript
+	public RedisScript<Long> acquireLeaseScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/acquire_lease.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	public RedisScript<Long> releaseLeaseScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/release_lease.lua");
+	}
+
+	@Bean
+	@RedisBungeeScript
+	@SuppressWarnings("rawtypes")
+	public RedisScript<List> heartbeatScript(@Autowired RedisBungee plugin) {
+		return loadScript(plugin, "lua/heartbeat.lua", List.class);
+	}
+
+	private static RedisScript<Long> loadScript(RedisBungee plugin, String path) {
+		return loadScript(plugin, path, Long.class);
+	}
+
+	private static <T> RedisScript<T> loadScript(RedisBungee plugin, String path, Class<T> resultType) {
+		DefaultRedisScript<T> script = new DefaultRedisScript<>();
 		script.setScriptText(
 				IOUtil.readInputStreamAsString(
-						plugin.getResourceAsStream("lua/get_player_count.lua")));
+						plugin.getResourceAsStream(path)));
 
-		script.setResultType(Long.class);
+		script.setResultType(resultType);
 
 		return script;
 	}
@@ -1,126 +1,700 @@
 package com.imaginarycode.minecraft.redisbungee;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.gson.Gson;
+import com.google.common.collect.Iterables;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.ScriptRegistry;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
 
 import de.pesacraft.bungee.core.server.ServerInformation;
 import de.pesacraft.shares.config.CustomRedisTemplate;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import net.md_5.bungee.api.ProxyServer;
-import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.PendingConnection;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 import javax.annotation.Resource;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import static com.imaginarycode.minecraft.redisbungee.util.RedisBytes.raw;
+import static com.imaginarycode.minecraft.redisbungee.util.RedisBytes.string;
+
 @VisibleForTesting
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @Component
 public class RedisUtil {
 
+	private static final byte[] NO_MESSAGE = new byte[0];
+	private static final int BATCH = 1000;
+
 	@Autowired
+	private RedisBungee plugin;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private CustomRedisTemplate redisTemplate;
 
-	@Resource(name = "redisTemplate")
-	private HashOperations<String, String, String> hashOperations;
+	@Autowired
+	private ScriptRegistry scriptRegistry;
 
-	@Resource(name = "redisTemplate")
-	private SetOperations<String, String> setOperations;
+	@Autowired
+	private RedisKeys redisKeys;
 
 	@Autowired
 	private ServerInformation serverInformation;
 
 	@Autowired
-	private Gson gson;
-
-	public void createPlayer(ProxiedPlayer player, boolean fireEvent) {
-		createPlayer(player.getPendingConnection(), fireEvent);
-		if (player.getServer() != null) {
-			String uuid = player.getUniqueId().toString();
-			ServerInfo server = player.getServer().getInfo();
-			String serverName = server.getName();
-//			String categoryKey = "category:" + server.getCategory().getName();
-
-			hashOperations.put("player:" + uuid, "server", serverName);
-			setOperations.add("server:" + serverName + ":usersOnline", uuid);
-//			setOperations.add(categoryKey + ":usersOnline", uuid);
-
-//			int players;
-//			switch (server.getServerType()) {
-//			case DIRECT: case LOBBY:
-//				players = pipeline.zincrby(categoryKey + ":servers", 1, serverName).get().intValue();
-//				server.getCategory().putServer(server, players);
-//				break;
-//			case GAME:
-//				String map = server.getMap();
-//				players = pipeline.zincrby(categoryKey + ":map:" + map, 1, serverName).get().intValue();
-//				((LobbyGameCategoryInfo) server.getCategory()).putGameServer(server.getMap(), server, players);
-//				break;
-//			default:
-//				break;
-//			}
-		}
-	}
-
-	public void createPlayer(PendingConnection connection, boolean fireEvent) {
-		Map<String, String> playerData = new HashMap<>(4);
-		playerData.put("online", "0");
-		playerData.put("ip", connection.getAddress().getAddress().getHostAddress());
-		playerData.put("proxy", serverInformation.getServerName());
-		playerData.put("name", connection.getName());
-
-		setOperations.add("proxy:" + serverInformation.getServerName() + ":usersOnline", connection.getUniqueId().toString());
-		hashOperations.putAll("player:" + connection.getUniqueId().toString(), playerData);
-
-		if (fireEvent) {
-			redisTemplate.convertAndSend("redisbungee-data", gson.toJson(new CachedDataManager.DataManagerMessage<>(
-					connection.getUniqueId(), CachedDataManager.DataManagerMessage.Action.JOIN,
-					new CachedDataManager.LoginPayload(connection.getAddress().getAddress()))));
-		}
-	}
-
-	public void cleanUpPlayer(String player) {
-		setOperations.remove("proxy:" + serverInformation.getServerName() + ":usersOnline", player);
-		hashOperations.delete("player:" + player, "server", "ip", "proxy");
-		ServerInfo server = ProxyServer.getInstance().getServerInfo(
-				hashOperations.get("player:" + player, "server"));
-		if (server != null) {
-			setOperations.remove("server:" + server.getName() + ":usersOnline", player);
-//			setOperations.remove("category:" + server.getCategory().getName() + ":usersOnline", player);
-
-//			int players;
-//			switch (server.getServerType()) {
-//			case DIRECT: case LOBBY:
-//				players = rsc.zincrby("category:" + server.getCategory().getName() + ":servers", -1, server.getName()).intValue();
-//				server.getCategory().putServer(server, players);
-//				break;
-//			case GAME:
-//				String map = server.getMap();
-//				players = rsc.zincrby("category:" + server.getCategory().getName() + ":map:" + map, -1, server.getName()).intValue();
-//				((LobbyGameCategoryInfo) server.getCategory()).putGameServer(server.getMap(), server, players);
-//				break;
-//			default:
-//				break;
-//			}
+	private DataMessagePublisher dataMessagePublisher;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	@Autowired
+	private UuidMemberCodec uuidMemberCodec;
+
+	@Autowired
+	private ServerManager serverManager;
+
+	@Autowired
+	private RedisScript<Long> createPlayersScript;
+
+	@Autowired
+	private RedisScript<Long> loginPlayerScript;
+
+	@Autowired
+	private RedisScript<Long> switchServerScript;
+
+	@Autowired
+	private RedisScript<Long> cleanUpPlayerScript;
+
+	@Autowired
+	@SuppressWarnings("rawtypes")
+	private RedisScript<List> releasePlayerScript;
+
+	@Autowired
+	private RedisScript<Long> recountPlayersScript;
+
+	@Autowired
+	@SuppressWarnings("rawtypes")
+	private RedisScript<List> cleanUpProxyScript;
+
+	/**
+	 * Registers players connected to this proxy who are missing from its set, {@value #BATCH} per script call, and
+	 * announces each of them with a JOIN message. In cluster mode the player hashes are written one by one, followed
+	 * by a command per set.
+	 *
+	 * @return the number of players added to this proxy's set
+	 */
+	public int createPlayers(Collection<ProxiedPlayer> players) {
+		String proxy = serverInformation.getServerName();
+
+		int added = 0;
+		for (List<ProxiedPlayer> batch : Iterables.partition(players, BATCH)) {
+			List<List<byte[]>> records = new ArrayList<>(batch.size());
+			List<String> servers = new ArrayList<>(batch.size());
+			for (ProxiedPlayer player : batch) {
+				String server = player.getServer() != null ? player.getServer().getInfo().getName() : null;
+				List<byte[]> fields = playerFields(player.getPendingConnection(), proxy);
+				if (server != null) {
+					fields.add(raw("server"));
+					fields.add(raw(server));
+				}
+				records.add(fields);
+				servers.add(server);
+			}
+
+			if (redisKeys.isCluster())
+				added += createBatchOnCluster(proxy, batch, records, servers);
+			else
+				added += createBatch(proxy, batch, records, servers);
+			metrics.increment("transitions.register", batch.size());
+
+			for (ProxiedPlayer player : batch) {
+				dataMessagePublisher.publish(new CachedDataManager.DataManagerMessage<>(
+						player.getUniqueId(), CachedDataManager.DataManagerMessage.Action.JOIN,
+						new CachedDataManager.LoginPayload(player.getPendingConnection().getAddress().getAddress())));
+			}
+		}
+		return added;
+	}
+
+	private int createBatch(String proxy, List<ProxiedPlayer> batch, List<List<byte[]>> records, List<String> servers) {
+		List<String> keys = new ArrayList<>(3 + batch.size() * 2);
+		keys.add(redisKeys.proxyPlayers(proxy));
+		keys.add(redisKeys.proxyCounts());
+		keys.add(redisKeys.serverCounts());
+
+		List<byte[]> args = new ArrayList<>(1 + batch.size() * 13);
+		args.add(raw(proxy));
+		for (int i = 0; i < batch.size(); i++) {
+			UUID uuid = batch.get(i).getUniqueId();
+			String server = servers.get(i);
+			keys.add(redisKeys.player(uuid));
+			if (server != null)
+				keys.add(redisKeys.serverPlayers(server));
+
+			args.add(uuidMemberCodec.encode(uuid));
+			args.add(raw(server != null ? server : ""));
+			args.add(raw(String.valueOf(records.get(i).size())));
+			args.addAll(records.get(i));
+		}
+		return scriptRegistry.execute(createPlayersScript, keys, args.toArray()).intValue();
+	}
+
+	/**
+	 * Does what create_players does in cluster mode, with a command per slot. The player hashes are written first, so
+	 * the players are online by the time they show up in a set.
+	 */
+	private int createBatchOnCluster(String proxy, List<ProxiedPlayer> batch, List<List<byte[]>> records, List<String> servers) {
+		List<byte[]> members = new ArrayList<>(batch.size());
+		Map<String, List<byte[]>> serverMembers = new LinkedHashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			UUID uuid = batch.get(i).getUniqueId();
+			updatePlayer(uuid, records.get(i));
+
+			byte[] member = uuidMemberCodec.encode(uuid);
+			members.add(member);
+			if (servers.get(i) != null)
+				serverMembers.computeIfAbsent(servers.get(i), server -> new ArrayList<>()).add(member);
+		}
+
+		long added = addMembers(redisKeys.proxyPlayers(proxy), redisKeys.proxyCounts(), proxy, members);
+		for (Map.Entry<String, List<byte[]>> entry : serverMembers.entrySet()) {
+			addMembers(redisKeys.serverPlayers(entry.getKey()), redisKeys.serverCounts(), entry.getKey(), entry.getValue());
+		}
+		return (int) added;
+	}
+
+	/**
+	 * Registers a player logging in to this proxy and stores their UUID cache entry, unless their player hash says
+	 * they are online on a live proxy already. Takes a single round trip.
+	 * <p>
+	 * In cluster mode the script only claims the player hash, checking the proxy in it against the live proxies this
+	 * proxy knows of, and the proxy set and the UUID cache are written afterwards. If those writes fail the player is
+	 * let in all the same, since their player hash says they are on this proxy: the integrity check adds connected
+	 * players missing from the proxy set, and the UUID cache is filled again on the next lookup.
+	 *
+	 * @param uuidCacheEntry the {@code uuid-cache} entry for the player
+	 * @return false if the player is already online
+	 */
+	public boolean loginPlayer(PendingConnection connection, String uuidCacheEntry) {
+		final UUID player = connection.getUniqueId();
+		final String name = connection.getName().toLowerCase();
+		final String proxy = serverInformation.getServerName();
+
+		List<byte[]> fields = playerFields(connection, proxy);
+
+		final List<byte[]> args = new ArrayList<>(16);
+		args.add(raw(proxy));
+		args.add(raw(name));
+		args.add(raw(player.toString()));
+		args.add(raw(uuidCacheEntry));
+		args.add(raw(String.valueOf(fields.size())));
+		args.addAll(fields);
+
+		final List<String> keys = new ArrayList<>(5);
+		keys.add(redisKeys.player(player));
+		if (!redisKeys.isCluster()) {
+			keys.add(redisKeys.proxyPlayers(proxy));
+			keys.add(redisKeys.proxyCounts());
+			keys.add(redisKeys.heartbeats());
+			keys.add(redisKeys.uuidCache(name));
+
+			Long result = execute("login", loginPlayerScript, keys, player, null, args);
+			return result != null && result == 1;
+		}
+
+		for (String id : serverManager.getServerIds()) {
+			args.add(raw(id));
+		}
+		final byte[] entry = raw(uuidCacheEntry);
+		return executeOnCluster("login", player, null, () -> {
+			Long result = scriptRegistry.execute(loginPlayerScript, keys, transitionArgs(player, null, args).toArray());
+			return result != null && result == 1 ? Boolean.TRUE : null;
+		}, claimed -> {
+			try {
+				addMembers(redisKeys.proxyPlayers(proxy), redisKeys.proxyCounts(), proxy,
+						Collections.singletonList(uuidMemberCodec.encode(player)));
+				redisTemplate.execute((RedisCallback<Object>) redis -> {
+					redis.hSet(raw(redisKeys.uuidCache(name)), raw(name), entry);
+					redis.hSet(raw(redisKeys.uuidCache(player.toString())), raw(player.toString()), entry);
+					return null;
+				});
+			} catch (RuntimeException e) {
+				metrics.increment("login.partial");
+				plugin.getLogger().log(Level.WARNING, "The login of " + player + " was only partially written, the integrity check adds them to the proxy set", e);
+			}
+		}) != null;
+	}
+
+	/**
+	 * @return the player hash fields and values of a player who is online on a proxy
+	 */
+	private static List<byte[]> playerFields(PendingConnection connection, String proxy) {
+		List<byte[]> fields = new ArrayList<>(10);
+		fields.add(raw("online"));
+		fields.add(raw("0"));
+		fields.add(raw("ip"));
+		fields.add(raw(connection.getAddress().getAddress().getHostAddress()));
+		fields.add(raw("proxy"));
+		fields.add(raw(proxy));
+		fields.add(raw("name"));
+		fields.add(raw(connection.getName()));
+		return fields;
+	}
+
+	public void switchServer(final UUID player, final String currentServerName, final String newServerName) {
+		CachedDataManager.DataManagerMessage<?> message = new CachedDataManager.DataManagerMessage<>(
+				player, CachedDataManager.DataManagerMessage.Action.SERVER_CHANGE,
+				new CachedDataManager.ServerChangePayload(newServerName, currentServerName));
+
+		if (redisKeys.isCluster()) {
+			executeOnCluster("switch", player, message, () -> {
+				updatePlayer(player, Arrays.asList(raw("server"), raw(newServerName)));
+				return newServerName;
+			}, server -> {
+				if (currentServerName != null)
+					removeMembers(redisKeys.serverPlayers(currentServerName), redisKeys.serverCounts(), currentServerName,
+							uuidMemberCodec.encode(player), uuidMemberCodec.encodeAlternate(player));
+				addMembers(redisKeys.serverPlayers(newServerName), redisKeys.serverCounts(), newServerName,
+						Collections.singletonList(uuidMemberCodec.encode(player)));
+			});
+			return;
+		}
+
+		List<String> keys = new ArrayList<>(4);
+		keys.add(redisKeys.player(player));
+		keys.add(redisKeys.serverPlayers(newServerName));
+		keys.add(redisKeys.serverCounts());
+		if (currentServerName != null)
+			keys.add(redisKeys.serverPlayers(currentServerName));
+
+		execute("switch", switchServerScript, keys, player, message,
+				Arrays.asList(raw(newServerName), raw(currentServerName != null ? currentServerName : "")));
+	}
+
+	/**
+	 * Takes a player who disconnected from this proxy off the network.
+	 *
+	 * @param server the server the player was on, or null. In cluster mode the server in their player hash is used.
+	 */
+	public void cleanUpPlayer(final UUID player, String server) {
+		final long timestamp = System.currentTimeMillis();
+		final String proxy = serverInformation.getServerName();
+		CachedDataManager.DataManagerMessage<?> message = new CachedDataManager.DataManagerMessage<>(
+				player, CachedDataManager.DataManagerMessage.Action.LEAVE,
+				new CachedDataManager.LogoutPayload(timestamp));
+
+		if (redisKeys.isCluster()) {
+			executeOnCluster("logout", player, message, () -> {
+				String released = releasePlayer(player, proxy, timestamp);
+				// A player on another proxy by now is only taken off this proxy's set.
+				return released != null ? released : "";
+			}, released -> {
+				byte[] member = uuidMemberCodec.encode(player);
+				byte[] alternate = uuidMemberCodec.encodeAlternate(player);
+				removeMembers(redisKeys.proxyPlayers(proxy), redisKeys.proxyCounts(), proxy, member, alternate);
+				if (!released.isEmpty())
+					removeMembers(redisKeys.serverPlayers(released), redisKeys.serverCounts(), released, member, alternate);
+			});
+			return;
 		}
+
+		List<String> keys = new ArrayList<>(5);
+		keys.add(redisKeys.player(player));
+		keys.add(redisKeys.proxyPlayers(proxy));
+		keys.add(redisKeys.proxyCounts());
+		keys.add(redisKeys.serverCounts());
+		if (server != null)
+			keys.add(redisKeys.serverPlayers(server));
+
+		execute("logout", cleanUpPlayerScript, keys, player, message,
+				Arrays.asList(raw(String.valueOf(timestamp)), raw(proxy), raw(server != null ? server : "")));
+	}
+
+	/**
+	 * Takes all players of a proxy off the network, {@value #BATCH} per batch. Each batch is announced with a single
+	 * PROXY_LOST message, or with a LEAVE message per player while some proxies do not understand those yet.
+	 *
+	 * @return the number of players taken off the network
+	 */
+	public int cleanUpProxy(String proxy) {
+		long timestamp = System.currentTimeMillis();
+		final byte[] setKey = raw(redisKeys.proxyPlayers(proxy));
+
+		int total = 0;
+		long remaining = Long.MAX_VALUE;
+		while (remaining > 0) {
+			List<byte[]> members = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+					connection.sRandMember(setKey, BATCH));
+
+			List<UUID> batch = new ArrayList<>(members.size());
+			List<byte[]> stored = new ArrayList<>(members.size());
+			final List<byte[]> garbage = new ArrayList<>();
+			for (byte[] member : members) {
+				UUID player = uuidMemberCodec.decode(member);
+				if (player != null) {
+					batch.add(player);
+					stored.add(member);
+				} else {
+					garbage.add(member);
+				}
+			}
+			if (!garbage.isEmpty())
+				redisTemplate.execute((RedisCallback<Long>) connection -> connection.sRem(setKey, garbage.toArray(new byte[0][])));
+
+			List<UUID> players = new ArrayList<>(batch.size());
+			long previous = remaining;
+			remaining = cleanUpBatch(proxy, batch, stored, timestamp, players);
+			if (remaining > 0 && remaining >= previous) {
+				// Every member read was removed, so the set only grows if the proxy is not gone after all.
+				plugin.getLogger().warning("The set of proxy " + proxy + " did not shrink while cleaning it up, " + remaining + " players are left in it.");
+				remaining = 0;
+			}
+			if (players.isEmpty())
+				continue;
+
+			total += players.size();
+			metrics.increment("transitions.proxyLost", players.size());
+			if (dataMessagePublisher.isProxyLostSupported()) {
+				dataMessagePublisher.publish(new CachedDataManager.DataManagerMessage<>(
+						CachedDataManager.ProxyLostPayload.TARGET, CachedDataManager.DataManagerMessage.Action.PROXY_LOST,
+						new CachedDataManager.ProxyLostPayload(proxy, timestamp, players)));
+			} else {
+				announceLeft(players, timestamp);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Takes players off the network who are in this proxy's set but no longer connected to it, {@value #BATCH} per
+	 * script call, and announces each of them with a LEAVE message. Players who are on another proxy by now are only
+	 * removed from this proxy's set.
+	 *
+	 * @return the number of players taken off the network
+	 */
+	public int cleanUpPlayers(Collection<UUID> players) {
 		long timestamp = System.currentTimeMillis();
-		hashOperations.put("player:" + player, "online", String.valueOf(timestamp));
-		redisTemplate.convertAndSend("redisbungee-data", gson.toJson(new CachedDataManager.DataManagerMessage<>(
-				UUID.fromString(player), CachedDataManager.DataManagerMessage.Action.LEAVE,
-				new CachedDataManager.LogoutPayload(timestamp))));
+
+		List<UUID> cleaned = new ArrayList<>(players.size());
+		for (List<UUID> batch : Iterables.partition(players, BATCH)) {
+			List<byte[]> members = new ArrayList<>(batch.size());
+			for (UUID player : batch) {
+				members.add(uuidMemberCodec.encode(player));
+			}
+			cleanUpBatch(serverInformation.getServerName(), batch, members, timestamp, cleaned);
+		}
+		metrics.increment("transitions.logout", cleaned.size());
+		announceLeft(cleaned, timestamp);
+		return cleaned.size();
+	}
+
+	/**
+	 * Runs cleanup_proxy on players of a proxy. Outside cluster mode the script is handed the sets of all servers of
+	 * this proxy, and takes the players off the one they are on.
+	 *
+	 * @param stored the set member of each player as it was read from the set
+	 * @param cleaned receives the players taken off the network
+	 * @return the number of players left in the proxy's set
+	 */
+	private long cleanUpBatch(String proxy, List<UUID> batch, List<byte[]> stored, long timestamp, List<UUID> cleaned) {
+		boolean cluster = redisKeys.isCluster();
+		Collection<String> servers = cluster ? Collections.<String>emptyList() : ProxyServer.getInstance().getServers().keySet();
+
+		List<String> keys = new ArrayList<>(cluster ? 1 : 3 + servers.size() + batch.size());
+		keys.add(redisKeys.proxyPlayers(proxy));
+		List<byte[]> args = new ArrayList<>(3 + servers.size() + batch.size() * 4);
+		args.add(raw(proxy));
+		args.add(raw(String.valueOf(timestamp)));
+		args.add(raw(String.valueOf(servers.size())));
+		if (!cluster) {
+			keys.add(redisKeys.proxyCounts());
+			keys.add(redisKeys.serverCounts());
+			for (String server : servers) {
+				keys.add(redisKeys.serverPlayers(server));
+				args.add(raw(server));
+			}
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			UUID player = batch.get(i);
+			if (!cluster)
+				keys.add(redisKeys.player(player));
+			// The script is handed both forms, like the other transition scripts, rather than decoding members. The
+			// member as read is removed too, it may be in neither form, for instance an upper case textual UUID.
+			args.add(raw(player.toString()));
+			args.add(stored.get(i));
+			args.add(uuidMemberCodec.encode(player));
+			args.add(uuidMemberCodec.encodeAlternate(player));
+		}
+
+		List<?> result = scriptRegistry.execute(cleanUpProxyScript, keys, args.toArray());
+		long remaining = ((Number) result.get(0)).longValue();
+		List<UUID> players = new ArrayList<>(result.size() - 1);
+		for (int i = 1; i < result.size(); i++) {
+			players.add(UUID.fromString(string(result.get(i))));
+		}
+		if (cluster)
+			players = cleanUpBatchOnCluster(proxy, batch, stored, players, remaining, timestamp);
+		cleaned.addAll(players);
+		return remaining;
+	}
+
+	private void announceLeft(List<UUID> players, long timestamp) {
+		for (UUID player : players) {
+			dataMessagePublisher.publish(new CachedDataManager.DataManagerMessage<>(
+					player, CachedDataManager.DataManagerMessage.Action.LEAVE,
+					new CachedDataManager.LogoutPayload(timestamp)));
+		}
+	}
+
+	/**
+	 * Does for the players taken from the set of a proxy what cleanup_proxy does outside cluster mode, where their
+	 * player hashes, the server sets and the counters live in other slots than the proxy set.
+	 *
+	 * @param players the players cleanup_proxy took from the set
+	 * @return the players that were still on the proxy
+	 */
+	private List<UUID> cleanUpBatchOnCluster(String proxy, List<UUID> batch, List<byte[]> stored, List<UUID> players,
+			final long remaining, long timestamp) {
+		final byte[] counts = raw(redisKeys.proxyCounts());
+		final byte[] field = raw(proxy);
+		final int taken = players.size();
+		redisTemplate.execute((RedisCallback<Object>) connection -> {
+			if (remaining == 0)
+				connection.hDel(counts, field);
+			else if (taken > 0)
+				connection.hIncrBy(counts, field, -taken);
+			return null;
+		});
+
+		Map<UUID, byte[]> storedMembers = new HashMap<>();
+		for (int i = 0; i < batch.size(); i++) {
+			storedMembers.put(batch.get(i), stored.get(i));
+		}
+
+		List<UUID> cleaned = new ArrayList<>(players.size());
+		Map<String, List<byte[]>> serverMembers = new LinkedHashMap<>();
+		for (UUID player : players) {
+			String server = releasePlayer(player, proxy, timestamp);
+			if (server == null)
+				continue;
+
+			cleaned.add(player);
+			if (!server.isEmpty()) {
+				List<byte[]> members = serverMembers.computeIfAbsent(server, name -> new ArrayList<>());
+				members.add(storedMembers.get(player));
+				members.add(uuidMemberCodec.encode(player));
+				members.add(uuidMemberCodec.encodeAlternate(player));
+			}
+		}
+		for (Map.Entry<String, List<byte[]>> entry : serverMembers.entrySet()) {
+			removeMembers(redisKeys.serverPlayers(entry.getKey()), redisKeys.serverCounts(), entry.getKey(),
+					entry.getValue().toArray(new byte[0][]));
+		}
+		return cleaned;
+	}
+
+	/**
+	 * Runs release_player on a player hash in cluster mode.
+	 *
+	 * @return the server the player was on, empty if they were not on one, or null if they are on another proxy
+	 */
+	private String releasePlayer(UUID player, String proxy, long timestamp) {
+		List<?> result = scriptRegistry.execute(releasePlayerScript, Collections.singletonList(redisKeys.player(player)),
+				raw(proxy), raw(String.valueOf(timestamp)));
+		return result == null || result.isEmpty() ? null : string(result.get(0));
+	}
+
+	/**
+	 * Resets the counters of this proxy and of the given servers to the size of their sets, correcting any
+	 * drift caused by writes that bypassed the transition scripts. In cluster mode each set is counted on its own,
+	 * since the sets live in other slots than the counters.
+	 */
+	public void recountPlayers(Collection<String> servers) {
+		String proxy = serverInformation.getServerName();
+		if (redisKeys.isCluster()) {
+			recount(redisKeys.proxyCounts(), proxy, redisKeys.proxyPlayers(proxy));
+			for (String server : servers) {
+				recount(redisKeys.serverCounts(), server, redisKeys.serverPlayers(server));
+			}
+			return;
+		}
+
+		List<String> keys = new ArrayList<>(servers.size() + 3);
+		keys.add(redisKeys.proxyPlayers(proxy));
+		keys.add(redisKeys.proxyCounts());
+		keys.add(redisKeys.serverCounts());
+		List<byte[]> args = new ArrayList<>(servers.size() + 1);
+		args.add(raw(proxy));
+		for (String server : servers) {
+			keys.add(redisKeys.serverPlayers(server));
+			args.add(raw(server));
+		}
+
+		scriptRegistry.execute(recountPlayersScript, keys, args.toArray());
+	}
+
+	private void recount(String counts, String field, String set) {
+		final byte[] rawCounts = raw(counts);
+		final byte[] rawField = raw(field);
+		final byte[] rawSet = raw(set);
+		redisTemplate.execute((RedisCallback<Object>) connection -> {
+			Long size = connection.sCard(rawSet);
+			if (size != null && size > 0)
+				connection.hSet(rawCounts, rawField, raw(String.valueOf(size)));
+			else
+				connection.hDel(rawCounts, rawField);
+			return null;
+		});
+	}
+
+	/**
+	 * Runs a transition script. The script is called with the player's set member in both forms, the data channel and
+	 * message and then {@code extraArgs}. If the publisher batches messages, the message is queued once the script has
+	 * succeeded instead of being published by the script. The time the transition takes is recorded in a
+	 * {@code transitions.<name>} histogram.
+	 */
+	private Long execute(String transition, RedisScript<Long> script, List<String> keys, UUID player,
+			CachedDataManager.DataManagerMessage<?> message, List<byte[]> extraArgs) {
+		boolean deferred = message != null && dataMessagePublisher.isBatching();
+
+		long start = System.nanoTime();
+		try {
+			// Arguments are serialized already, see UuidMemberCodec and raw().
+			Long result = scriptRegistry.execute(script, keys, transitionArgs(player, deferred ? null : message, extraArgs).toArray());
+			metrics.increment("transitions." + transition);
+
+			if (deferred && result != null && result == 1)
+				dataMessagePublisher.publish(message);
+			return result;
+		} finally {
+			metrics.recordLatency("transitions." + transition, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Runs a transition in cluster mode, where the player hash, the sets and the counters live in different slots.
+	 * {@code record} writes the player hash first, since that is what logins and lookups go by, and returns null if
+	 * the transition does not apply. {@code sets} then updates the sets and counters with a command per slot. Once
+	 * the player hash is written the message is published, even if {@code sets} fails.
+	 */
+	private <T> T executeOnCluster(String transition, UUID player, CachedDataManager.DataManagerMessage<?> message,
+			Supplier<T> record, Consumer<T> sets) {
+		long start = System.nanoTime();
+		try {
+			T written = record.get();
+			metrics.increment("transitions." + transition);
+			if (written == null)
+				return null;
+
+			try {
+				sets.accept(written);
+			} catch (RuntimeException e) {
+				plugin.getLogger().log(Level.WARNING, "The " + transition + " of " + player + " was only partially written, the sets and counters are outdated", e);
+				throw e;
+			} finally {
+				if (message != null)
+					dataMessagePublisher.publish(message);
+			}
+			return written;
+		} finally {
+			// All round trips of the transition.
+			metrics.recordLatency("transitions." + transition, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @return the arguments every transition script starts with, the player's set member in both forms and the data
+	 * channel and message (empty without a message), followed by {@code extraArgs}
+	 */
+	private List<byte[]> transitionArgs(UUID player, CachedDataManager.DataManagerMessage<?> message, List<byte[]> extraArgs) {
+		List<byte[]> args = new ArrayList<>(extraArgs.size() + 4);
+		args.add(uuidMemberCodec.encode(player));
+		args.add(uuidMemberCodec.encodeAlternate(player));
+		if (message == null) {
+			args.add(NO_MESSAGE);
+			args.add(NO_MESSAGE);
+		} else {
+			DataMessagePublisher.PreparedMessage prepared = dataMessagePublisher.prepare(message);
+			args.add(prepared.getChannel());
+			args.add(prepared.getBody());
+		}
+		args.addAll(extraArgs);
+		return args;
+	}
+
+	/**
+	 * Writes a player hash in cluster mode, where the transition scripts cannot reach it.
+	 */
+	private void updatePlayer(UUID player, List<byte[]> fieldsAndValues) {
+		final byte[] key = raw(redisKeys.player(player));
+		final Map<byte[], byte[]> hash = new LinkedHashMap<>();
+		for (int i = 0; i < fieldsAndValues.size(); i += 2) {
+			hash.put(fieldsAndValues.get(i), fieldsAndValues.get(i + 1));
+		}
+		redisTemplate.execute((RedisCallback<Object>) connection -> {
+			connection.hMSet(key, hash);
+			return null;
+		});
+	}
+
+	/**
+	 * Adds members to a set in cluster mode and counts those that were added, with a command each for the set and the
+	 * counter as they live in different slots.
+	 *
+	 * @return the number of members added
+	 */
+	private long addMembers(String set, String counts, String field, List<byte[]> members) {
+		final byte[] rawSet = raw(set);
+		final byte[] rawCounts = raw(counts);
+		final byte[] rawField = raw(field);
+		final byte[][] values = members.toArray(new byte[0][]);
+		return redisTemplate.execute((RedisCallback<Long>) connection -> {
+			Long added = connection.sAdd(rawSet, values);
+			if (added != null && added > 0)
+				connection.hIncrBy(rawCounts, rawField, added);
+			return added != null ? added : 0L;
+		});
+	}
+
+	/**
+	 * Removes members from a set in cluster mode and counts those that were removed, see
+	 * {@link #addMembers(String, String, String, List)}.
+	 */
+	private void removeMembers(String set, String counts, String field, final byte[]... members) {
+		final byte[] rawSet = raw(set);
+		final byte[] rawCounts = raw(counts);
+		final byte[] rawField = raw(field);
+		redisTemplate.execute((RedisCallback<Object>) connection -> {
+			Long removed = connection.sRem(rawSet, members);
+			if (removed != null && removed > 0)
+				connection.hIncrBy(rawCounts, rawField, -removed);
+			return null;
+		});
 	}
 
 	public static boolean canUseLua(String redisVersion) {
@@ -3,7 +3,6 @@ package com.imaginarycode.minecraft.redisbungee.listener;
 import com.google.common.base.Joiner;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multiset;
 import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
@@ -16,6 +15,7 @@ import com.imaginarycode.minecraft.redisbungee.events.PubSubMessageEvent;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
 import com.imaginarycode.minecraft.redisbungee.manager.PlayerManager;
 import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
 import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDTranslator;
 
 import de.pesacraft.bungee.core.server.ServerInformation;
@@ -68,6 +68,9 @@ public class ManagmentListener implements Listener, InitializingBean {
 	@Autowired
 	private UUIDTranslator uuidTranslator;
 
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		plugin.getProxy().getPluginManager().registerListener(plugin, this);
@@ -95,102 +98,101 @@ public class ManagmentListener implements Listener, InitializingBean {
 			plugin.getProxy().getScheduler().runAsync(plugin, new Runnable() {
 				@Override
 				public void run() {
-					ByteArrayDataInput in = ByteStreams.newDataInput(data);
-
-					String subchannel = in.readUTF();
-					ByteArrayDataOutput out = ByteStreams.newDataOutput();
-					String type;
-
-					switch (subchannel) {
-						case "PlayerList":
-							out.writeUTF("PlayerList");
-							Set<UUID> original = Collections.emptySet();
-							type = in.readUTF();
-							if (type.equals("ALL")) {
-								out.writeUTF("ALL");
-								original = playerManager.getPlayers();
-							} else {
-								try {
-									original = api.getPlayersOnServer(type);
-								} catch (IllegalArgumentException ignored) {
+					try (RedisBungeeMetrics.CallerScope scope = metrics.caller("listener.pluginMessage")) {
+						ByteArrayDataInput in = ByteStreams.newDataInput(data);
+
+						String subchannel = in.readUTF();
+						ByteArrayDataOutput out = ByteStreams.newDataOutput();
+						String type;
+
+						switch (subchannel) {
+							case "PlayerList":
+								out.writeUTF("PlayerList");
+								Set<UUID> original = Collections.emptySet();
+								type = in.readUTF();
+								if (type.equals("ALL")) {
+									out.writeUTF("ALL");
+									original = playerManager.getPlayers();
+								} else {
+									try {
+										original = api.getPlayersOnServer(type);
+									} catch (IllegalArgumentException ignored) {
+									}
 								}
-							}
-							Set<String> players = new HashSet<>();
-							for (UUID uuid : original)
-								players.add(uuidTranslator.getNameFromUuid(uuid, false));
-							out.writeUTF(Joiner.on(',').join(players));
-							break;
-						case "PlayerCount":
-							out.writeUTF("PlayerCount");
-							type = in.readUTF();
-							if (type.equals("ALL")) {
-								out.writeUTF("ALL");
-								out.writeInt(playerManager.getCount());
-							} else {
-								out.writeUTF(type);
-								try {
-									out.writeInt(api.getPlayersOnServer(type).size());
-								} catch (IllegalArgumentException e) {
-									out.writeInt(0);
+								Set<String> players = new HashSet<>(uuidTranslator.getNamesFromUuids(original, false).values());
+								out.writeUTF(Joiner.on(',').join(players));
+								break;
+							case "PlayerCount":
+								out.writeUTF("PlayerCount");
+								type = in.readUTF();
+								if (type.equals("ALL")) {
+									out.writeUTF("ALL");
+									out.writeInt(playerManager.getCount());
+								} else {
+									out.writeUTF(type);
+									try {
+										out.writeInt(api.getPlayerCountOnServer(type));
+									} catch (IllegalArgumentException e) {
+										out.writeInt(0);
+									}
 								}
-							}
-							break;
-						case "LastOnline":
-							String user = in.readUTF();
-							out.writeUTF("LastOnline");
-							out.writeUTF(user);
-							out.writeLong(api.getLastOnline(uuidTranslator.getTranslatedUuid(user, true)));
-							break;
-						case "ServerPlayers":
-							String type1 = in.readUTF();
-							out.writeUTF("ServerPlayers");
-							Multimap<String, UUID> multimap = api.getServerToPlayers();
-
-							boolean includesUsers;
-
-							switch (type1) {
-								case "COUNT":
-									includesUsers = false;
-									break;
-								case "PLAYERS":
-									includesUsers = true;
-									break;
-								default:
-									// TODO: Should I raise an error?
-									return;
-							}
-
-							out.writeUTF(type1);
-
-							if (includesUsers) {
-								Multimap<String, String> human = HashMultimap.create();
-								for (Map.Entry<String, UUID> entry : multimap.entries()) {
-									human.put(entry.getKey(), uuidTranslator.getNameFromUuid(entry.getValue(), false));
+								break;
+							case "LastOnline":
+								String user = in.readUTF();
+								out.writeUTF("LastOnline");
+								out.writeUTF(user);
+								out.writeLong(api.getLastOnline(uuidTranslator.getTranslatedUuid(user, true)));
+								break;
+							case "ServerPlayers":
+								String type1 = in.readUTF();
+								out.writeUTF("ServerPlayers");
+
+								boolean includesUsers;
+
+								switch (type1) {
+									case "COUNT":
+										includesUsers = false;
+										break;
+									case "PLAYERS":
+										includesUsers = true;
+										break;
+									default:
+										// TODO: Should I raise an error?
+										return;
 								}
-								serializeMultimap(human, true, out);
-							} else {
-								serializeMultiset(multimap.keys(), out);
-							}
-							break;
-						case "Proxy":
-							out.writeUTF("Proxy");
-							out.writeUTF(serverInformation.getServerName());
-							break;
-						default:
-							return;
-					}
 
-					((Server) event.getSender()).sendData("RedisBungee", out.toByteArray());
+								out.writeUTF(type1);
+
+								if (includesUsers) {
+									Multimap<String, String> human = HashMultimap.create();
+									for (Map.Entry<String, UUID> entry : api.getServerToPlayers().entries()) {
+										human.put(entry.getKey(), uuidTranslator.getNameFromUuid(entry.getValue(), false));
+									}
+									serializeMultimap(human, true, out);
+								} else {
+									serializeCounts(playerManager.getServerPlayerCounts(), out);
+								}
+								break;
+							case "Proxy":
+								out.writeUTF("Proxy");
+								out.writeUTF(serverInformation.getServerName());
+								break;
+							default:
+								return;
+						}
+
+						((Server) event.getSender()).sendData("RedisBungee", out.toByteArray());
+					}
 				}
 			});
 		}
 	}
 
-	private void serializeMultiset(Multiset<String> collection, ByteArrayDataOutput output) {
-		output.writeInt(collection.elementSet().size());
-		for (Multiset.Entry<String> entry : collection.entrySet()) {
-			output.writeUTF(entry.getElement());
-			output.writeInt(entry.getCount());
+	private void serializeCounts(Map<String, Integer> counts, ByteArrayDataOutput output) {
+		output.writeInt(counts.size());
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			output.writeUTF(entry.getKey());
+			output.writeInt(entry.getValue());
 		}
 	}
 
@@ -1,19 +1,19 @@
 package com.imaginarycode.minecraft.redisbungee.listener;
 
+import java.util.UUID;
+
 import javax.annotation.Resource;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.SetOperations;
 import org.springframework.stereotype.Component;
 
-import com.google.gson.Gson;
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
 import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
 import com.imaginarycode.minecraft.redisbungee.RedisUtil;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
-import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher;
 import com.imaginarycode.minecraft.redisbungee.util.uuid.UUIDTranslator;
 
 import de.pesacraft.shares.config.CustomRedisTemplate;
@@ -50,18 +50,9 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 	@Autowired
 	private RedisBungee plugin;
 
-	@Autowired
-	private ServerManager serverManager;
-
-	@Autowired
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private CustomRedisTemplate redisTemplate;
 
-	@Resource(name = "redisTemplate")
-	private SetOperations<String, String> setOperations;
-
-	@Resource(name = "redisTemplate")
-	private HashOperations<String, String, String> hashOperations;
-
 	@Autowired
 	private UUIDTranslator uuidTranslator;
 
@@ -72,7 +63,10 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 	private CachedDataManager cachedDataManager;
 
 	@Autowired
-	private Gson gson;
+	private DataMessagePublisher dataMessagePublisher;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
@@ -81,37 +75,40 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 
 	@EventHandler(priority = EventPriority.LOWEST)
 	public void onLogin(final LoginEvent event) {
+		final long start = System.nanoTime();
 		event.registerIntent(plugin);
 		plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-			if (event.isCancelled()) {
-				return;
-			}
-
-			// We make sure they aren't trying to use an existing player's name.
-			// This is problematic for online-mode servers as they always disconnect old clients.
-			if (plugin.getProxy().getConfig().isOnlineMode()) {
-				ProxiedPlayer player = plugin.getProxy().getPlayer(event.getConnection().getName());
-
-				if (player != null) {
-					event.setCancelled(true);
-					// TODO: Make it accept a BaseComponent[] like everything else.
-					event.setCancelReason(TextComponent.toLegacyText(ONLINE_MODE_RECONNECT));
+			try (RedisBungeeMetrics.CallerScope ignored = metrics.caller("listener.login")) {
+				if (event.isCancelled()) {
 					return;
 				}
-			}
 
-			for (String s : serverManager.getServerIds()) {
-				if (setOperations.isMember("proxy:" + s + ":usersOnline", event.getConnection().getUniqueId().toString())) {
+				// We make sure they aren't trying to use an existing player's name.
+				// This is problematic for online-mode servers as they always disconnect old clients.
+				if (plugin.getProxy().getConfig().isOnlineMode()) {
+					ProxiedPlayer player = plugin.getProxy().getPlayer(event.getConnection().getName());
+
+					if (player != null) {
+						event.setCancelled(true);
+						// TODO: Make it accept a BaseComponent[] like everything else.
+						event.setCancelReason(TextComponent.toLegacyText(ONLINE_MODE_RECONNECT));
+						return;
+					}
+				}
+
+				// Checks every proxy, caches the UUID and registers the player in one go.
+				String uuidCacheEntry = uuidTranslator.cacheInfo(event.getConnection().getName(), event.getConnection().getUniqueId());
+				if (!redisUtil.loginPlayer(event.getConnection(), uuidCacheEntry)) {
+					metrics.increment("login.alreadyOnline");
 					event.setCancelled(true);
 					// TODO: Make it accept a BaseComponent[] like everything else.
 					event.setCancelReason(TextComponent.toLegacyText(ALREADY_LOGGED_IN));
-					return;
 				}
+				// We're not publishing, the API says we only publish at PostLoginEvent time.
+			} finally {
+				event.completeIntent(plugin);
+				metrics.recordLatency("login", System.nanoTime() - start);
 			}
-
-			uuidTranslator.persistInfo(event.getConnection().getName(), event.getConnection().getUniqueId());
-			redisUtil.createPlayer(event.getConnection(), false);
-			// We're not publishing, the API says we only publish at PostLoginEvent time.
 		});
 	}
 
@@ -121,9 +118,11 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 		cachedDataManager.invalidate(event.getPlayer().getUniqueId());
 
 		plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-			redisTemplate.convertAndSend("redisbungee-data", new CachedDataManager.DataManagerMessage<>(
-					event.getPlayer().getUniqueId(), CachedDataManager.DataManagerMessage.Action.JOIN,
-					new CachedDataManager.LoginPayload(event.getPlayer().getAddress().getAddress())));
+			try (RedisBungeeMetrics.CallerScope ignored = metrics.caller("listener.postLogin")) {
+				dataMessagePublisher.publish(new CachedDataManager.DataManagerMessage<>(
+						event.getPlayer().getUniqueId(), CachedDataManager.DataManagerMessage.Action.JOIN,
+						new CachedDataManager.LoginPayload(event.getPlayer().getAddress().getAddress())));
+			}
 		});
 	}
 
@@ -131,9 +130,12 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 	public void onPlayerDisconnect(final PlayerDisconnectEvent event) {
 		// Invalidate all entries related to this player, since they now lie.
 		cachedDataManager.invalidate(event.getPlayer().getUniqueId());
+		final String server = event.getPlayer().getServer() != null ? event.getPlayer().getServer().getInfo().getName() : null;
 
 		plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-			redisUtil.cleanUpPlayer(event.getPlayer().getUniqueId().toString());
+			try (RedisBungeeMetrics.CallerScope ignored = metrics.caller("listener.disconnect")) {
+				redisUtil.cleanUpPlayer(event.getPlayer().getUniqueId(), server);
+			}
 		});
 	}
 
@@ -145,11 +147,12 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 		if (currentServer == null) {
 			// joining network
 			final String newServerName = newServer.getName();
-			final String uuid = event.getPlayer().getUniqueId().toString();
+			final UUID uuid = event.getPlayer().getUniqueId();
 
 			plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-				hashOperations.put("player:" + uuid, "server", newServerName);
-				setOperations.add("server:" + newServerName + ":usersOnline", uuid);
+				try (RedisBungeeMetrics.CallerScope ignored = metrics.caller("listener.serverChange")) {
+					redisUtil.switchServer(uuid, null, newServerName);
+				}
 
 //				jedis.sadd("category:" + newServer.getCategory().getName() + ":usersOnline", uuid);
 //
@@ -167,21 +170,18 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 //				default:
 //					break;
 //				}
-				redisTemplate.convertAndSend("redisbungee-data", gson.toJson(new CachedDataManager.DataManagerMessage<>(
-						event.getPlayer().getUniqueId(), CachedDataManager.DataManagerMessage.Action.SERVER_CHANGE,
-						new CachedDataManager.ServerChangePayload(newServerName, null))));
 			});
 		}
 		else {
 			// switching server
 			final String currentServerName = currentServer.getName();
 			final String newServerName = newServer.getName();
-			final String uuid = event.getPlayer().getUniqueId().toString();
+			final UUID uuid = event.getPlayer().getUniqueId();
 
 			plugin.getProxy().getScheduler().runAsync(plugin, () -> {
-				hashOperations.put("player:" + uuid, "server", newServerName);
-				setOperations.remove("server:" + currentServerName + ":usersOnline", uuid);
-				setOperations.add("server:" + newServerName + ":usersOnline", uuid);
+				try (RedisBungeeMetrics.CallerScope ignored = metrics.caller("listener.serverChange")) {
+					redisUtil.switchServer(uuid, currentServerName, newServerName);
+				}
 
 //				if (newServer.getCategory() != currentServer.getCategory()) {
 //					jedis.srem("category:" + currentServer.getCategory().getName() + ":usersOnline", uuid);
@@ -215,9 +215,6 @@ public class PlayerConnectionListener implements Listener, InitializingBean {
 //				default:
 //					break;
 //				}
-				redisTemplate.convertAndSend("redisbungee-data", gson.toJson(new CachedDataManager.DataManagerMessage<>(
-						event.getPlayer().getUniqueId(), CachedDataManager.DataManagerMessage.Action.SERVER_CHANGE,
-						new CachedDataManager.ServerChangePayload(newServerName, currentServerName))));
 			});
 		}
 	}
@@ -1,13 +1,11 @@
 package com.imaginarycode.minecraft.redisbungee.listener;
 
+import java.util.UUID;
+
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.reflect.TypeToken;
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
 import com.imaginarycode.minecraft.redisbungee.RedisBungeeCommandSender;
 import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
@@ -19,7 +17,13 @@ import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LoginPayload;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LogoutPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ProxyLostPayload;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ServerChangePayload;
+import com.imaginarycode.minecraft.redisbungee.manager.OnlinePlayersIndex;
+import com.imaginarycode.minecraft.redisbungee.manager.PlayerReplica;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerPlayersIndex;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher;
+import com.imaginarycode.minecraft.redisbungee.pubsub.MessageDispatcher;
 
 import de.pesacraft.bungee.core.server.ServerInformation;
 import net.md_5.bungee.api.plugin.Event;
@@ -38,13 +42,23 @@ public class PubSubMessageListener implements Listener, InitializingBean {
 	@Autowired
 	private ServerInformation serverInformation;
 
+	@Autowired
+	private PlayerReplica playerReplica;
+
+	@Autowired
+	private ServerPlayersIndex serverPlayersIndex;
+
+	@Autowired
+	private OnlinePlayersIndex onlinePlayersIndex;
+
 	@Autowired
 	private RedisBungeeCommandSender redisBungeeCommandSender;
 
 	@Autowired
-	private Gson gson;
+	private DataMessagePublisher dataMessagePublisher;
 
-	private final JsonParser parser = new JsonParser();
+	@Autowired
+	private MessageDispatcher dispatcher;
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
@@ -62,49 +76,79 @@ public class PubSubMessageListener implements Listener, InitializingBean {
         }
     }
 
-	@EventHandler
-	public void onPubSubMessage(PubSubMessageEvent event) {
-		if (!event.getChannel().equals("redisbungee-data"))
-			return;
-
-		// Partially deserialize the message so we can look at the action
-		JsonObject jsonObject = parser.parse(event.getMessage()).getAsJsonObject();
-
-		String source = jsonObject.get("source").getAsString();
+	/**
+	 * Hands a data message to the dispatcher lane of its player. The players of a PROXY_LOST message are handled on
+	 * their own lanes, so they stay in order with the other messages about them.
+	 */
+	public void dispatchDataMessage(final DataManagerMessage<?> message) {
+		dispatcher.dispatch(message.getTarget(), () -> handleDataMessage(message));
+
+		if (message.getAction() == DataManagerMessage.Action.PROXY_LOST) {
+			final ProxyLostPayload payload = (ProxyLostPayload) message.getPayload();
+			// Like LEAVE, the proxy that cleaned up does not fire events for its own message.
+			final boolean local = message.getSource().equals(serverInformation.getServerName());
+			for (final UUID player : payload.getPlayers()) {
+				dispatcher.dispatch(player, () -> playerLeft(player, payload.getTimestamp(), local));
+			}
+		}
+	}
 
-		if (source.equals(serverInformation.getServerName()))
-			return;
+	/**
+	 * Applies a data message to the local state and fires the matching network event. Called on the
+	 * {@link MessageDispatcher} lane of the message's player.
+	 */
+	public void handleDataMessage(DataManagerMessage<?> message) {
+		boolean local = message.getSource().equals(serverInformation.getServerName());
+		if (local)
+			dataMessagePublisher.received(message);
 
-		DataManagerMessage.Action action = DataManagerMessage.Action.valueOf(jsonObject.get("action").getAsString());
+		// Our own messages are only of interest to the replica and the indexes.
+		playerReplica.checkSequence(message.getSource(), message.getEpoch(), message.getSequence());
 
-		switch (action) {
+		switch (message.getAction()) {
 			case JOIN:
-				final DataManagerMessage<LoginPayload> message1 = gson.fromJson(jsonObject, new TypeToken<DataManagerMessage<LoginPayload>>(){}.getType());
-
-				cachedDataManager.playerJoined(message1.getTarget(), message1.getSource(), message1.getPayload().getAddress());
-				callEvent(new PlayerJoinedNetworkEvent(message1.getTarget()));
+				final LoginPayload payload1 = (LoginPayload) message.getPayload();
+
+				playerReplica.playerJoined(message.getTarget(), message.getSource(), payload1.getAddress());
+				onlinePlayersIndex.playerJoined(message.getTarget());
+				if (local)
+					break;
+				cachedDataManager.playerJoined(message.getTarget(), message.getSource(), payload1.getAddress());
+				callEvent(new PlayerJoinedNetworkEvent(message.getTarget()));
 				break;
 			case LEAVE:
-				final DataManagerMessage<LogoutPayload> message2 = gson.fromJson(jsonObject, new TypeToken<DataManagerMessage<LogoutPayload>>(){}.getType());
+				final LogoutPayload payload2 = (LogoutPayload) message.getPayload();
 
-				cachedDataManager.playerLeft(message2.getTarget(), message2.getPayload().getTimestamp());
-				callEvent(new PlayerLeftNetworkEvent(message2.getTarget()));
+				playerLeft(message.getTarget(), payload2.getTimestamp(), local);
 				break;
 			case SERVER_CHANGE:
-				final DataManagerMessage<ServerChangePayload> message3 = gson.fromJson(jsonObject, new TypeToken<DataManagerMessage<ServerChangePayload>>(){}.getType());
-
-				cachedDataManager.playerSwitchedServer(message3.getTarget(), message3.getPayload().getServer());
-				callEvent(new PlayerChangedServerNetworkEvent(message3.getTarget(), message3.getPayload().getOldServer(), message3.getPayload().getServer()));
+				final ServerChangePayload payload3 = (ServerChangePayload) message.getPayload();
+
+				playerReplica.playerSwitchedServer(message.getTarget(), payload3.getServer());
+				serverPlayersIndex.playerSwitchedServer(message.getTarget(), payload3.getServer());
+				if (local)
+					break;
+				cachedDataManager.playerSwitchedServer(message.getTarget(), payload3.getServer());
+				callEvent(new PlayerChangedServerNetworkEvent(message.getTarget(), payload3.getOldServer(), payload3.getServer()));
+				break;
+			case PROXY_LOST:
+				// The players are handled on their own lanes, see dispatchDataMessage.
 				break;
 		}
 	}
 
+	private void playerLeft(UUID player, long timestamp, boolean local) {
+		playerReplica.playerLeft(player);
+		serverPlayersIndex.playerLeft(player);
+		onlinePlayersIndex.playerLeft(player);
+		if (local)
+			return;
+		cachedDataManager.playerLeft(player, timestamp);
+		callEvent(new PlayerLeftNetworkEvent(player));
+	}
+
 	private void callEvent(Event event) {
-		plugin.getProxy().getScheduler().runAsync(plugin, new Runnable() {
-			@Override
-			public void run() {
-				plugin.getProxy().getPluginManager().callEvent(event);
-			}
-		});
+		// Fired on the dispatcher lane, so the events of a player are fired in order.
+		plugin.getProxy().getPluginManager().callEvent(event);
 	}
 }
@@ -3,7 +3,6 @@ package com.imaginarycode.minecraft.redisbungee.listener;
 import java.io.File;
 import java.io.IOException;
 import java.util.Properties;
-import java.util.Set;
 
 import javax.annotation.Resource;
 
@@ -11,7 +10,6 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.connection.RedisServerCommands;
 import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.scripting.ScriptSource;
 import org.springframework.scripting.support.ResourceScriptSource;
@@ -20,9 +18,14 @@ import org.springframework.stereotype.Component;
 import com.google.gson.JsonParser;
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
 import com.imaginarycode.minecraft.redisbungee.RedisBungeeCommandSender;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
 import com.imaginarycode.minecraft.redisbungee.RedisUtil;
 import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher;
+import com.imaginarycode.minecraft.redisbungee.repetitive.LeaderLease;
 import com.imaginarycode.minecraft.redisbungee.util.IOUtil;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
 
 import de.pesacraft.bungee.core.event.spring.SpringContextClosingEvent;
 import de.pesacraft.bungee.core.event.spring.SpringContextStartedEvent;
@@ -37,18 +40,24 @@ public class SpringContextListener  implements Listener, InitializingBean {
 	@Autowired
 	private RedisBungee plugin;
 
-	@Resource(name = "redisTemplate")
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private HashOperations<String, String, String> hashOperations;
 
-	@Resource(name = "redisTemplate")
-	private SetOperations<String, String> setOperations;
-
 	@Autowired
 	private ServerInformation serverInformation;
 
 	@Autowired
 	private RedisUtil redisUtil;
 
+	@Autowired
+	private LeaderLease leaderLease;
+
+	@Autowired
+	private ServerManager serverManager;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		plugin.getProxy().getPluginManager().registerListener(plugin, this);
@@ -61,9 +70,9 @@ public class SpringContextListener  implements Listener, InitializingBean {
 		if (crashFile.exists()) {
 			crashFile.delete();
 		}
-		else if (hashOperations.hasKey("heartbeats", serverInformation.getServerName())) {
+		else if (hashOperations.hasKey(redisKeys.heartbeats(), serverInformation.getServerName())) {
 			try {
-				long value = Long.parseLong(hashOperations.get("heartbeats", serverInformation.getServerName()));
+				long value = Long.parseLong(hashOperations.get(redisKeys.heartbeats(), serverInformation.getServerName()));
 				if (System.currentTimeMillis() < value + 20000) {
 					plugin.getLogger().severe("You have launched a possible impostor BungeeCord instance. Another instance is already running.");
 					plugin.getLogger().severe("For data consistency reasons, RedisBungee will now disable itself.");
@@ -74,9 +83,12 @@ public class SpringContextListener  implements Listener, InitializingBean {
 		}
 
 
-		hashOperations.put("heartbeats", serverInformation.getServerName(), String.valueOf(System.currentTimeMillis()));
+		hashOperations.put(redisKeys.heartbeats(), serverInformation.getServerName(), String.valueOf(System.currentTimeMillis()));
 
-		long uuidCacheSize = hashOperations.size("uuid-cache");
+		long uuidCacheSize = 0;
+		for (String key : redisKeys.uuidCaches()) {
+			uuidCacheSize += hashOperations.size(key);
+		}
 		if (uuidCacheSize > 750000) {
 			plugin.getLogger().info("Looks like you have a really big UUID cache! Run https://www.spigotmc.org/resources/redisbungeecleaner.8505/ as soon as possible.");
 		}
@@ -86,12 +98,10 @@ public class SpringContextListener  implements Listener, InitializingBean {
 
 	@EventHandler
 	public void onSpringContextEnd(SpringContextClosingEvent event) {
-		hashOperations.delete("heartbeats", serverInformation.getServerName());
-		if (setOperations.size("proxy:" + serverInformation.getServerName() + ":usersOnline") > 0) {
-			Set<String> players = setOperations.members("proxy:" + serverInformation.getServerName() + ":usersOnline");
-			for (String member : players) {
-				redisUtil.cleanUpPlayer(member);
-			}
-		}
+		hashOperations.delete(redisKeys.heartbeats(), serverInformation.getServerName());
+		hashOperations.delete(DataMessagePublisher.CODECS_KEY, serverInformation.getServerName());
+		serverManager.leave();
+		redisUtil.cleanUpProxy(serverInformation.getServerName());
+		leaderLease.release();
 	}
 }
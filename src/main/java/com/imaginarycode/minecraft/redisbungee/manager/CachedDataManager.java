@@ -1,22 +1,30 @@
 package com.imaginarycode.minecraft.redisbungee.manager;
 
-import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.net.InetAddresses;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
 import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
 import com.imaginarycode.minecraft.redisbungee.events.PlayerChangedServerNetworkEvent;
 import com.imaginarycode.minecraft.redisbungee.events.PlayerJoinedNetworkEvent;
 import com.imaginarycode.minecraft.redisbungee.events.PlayerLeftNetworkEvent;
 import com.imaginarycode.minecraft.redisbungee.events.PubSubMessageEvent;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.util.ReadRouter;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
 
 import de.pesacraft.bungee.core.server.ServerInformation;
+import de.pesacraft.shares.config.CustomRedisTemplate;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.event.PlayerDisconnectEvent;
@@ -26,17 +34,23 @@ import net.md_5.bungee.event.EventHandler;
 import redis.clients.jedis.Jedis;
 
 import java.net.InetAddress;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 
 import javax.annotation.Resource;
 
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.SetOperations;
 import org.springframework.stereotype.Component;
 
@@ -46,28 +60,173 @@ import org.springframework.stereotype.Component;
  * @since 0.3.3
  */
 @Component
-public class CachedDataManager {
+public class CachedDataManager implements InitializingBean {
 
 	@Autowired
 	private RedisBungee plugin;
 
-	@Resource(name = "redisTemplate")
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private CustomRedisTemplate redisTemplate;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private HashOperations<String, String, String> hashOperations;
 
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private ReadRouter readRouter;
+
 	@Autowired
 	private ServerInformation serverInformation;
 
-	private final Cache<UUID, String> serverCache = createCache();
-	private final Cache<UUID, String> proxyCache = createCache();
-	private final Cache<UUID, InetAddress> ipCache = createCache();
-	private final Cache<UUID, Long> lastOnlineCache = createCache();
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	@Autowired
+	private PlayerReplica playerReplica;
+
+	private static final List<String> RECORD_FIELDS = ImmutableList.of("server", "proxy", "ip", "online");
+
+	private LoadingCache<UUID, PlayerRecord> recordCache;
+
+	// The heap estimate is only recomputed when the cache size changed since it was last read.
+	private long estimatedSize = -1;
+	private long estimatedBytes;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		// Reloads run in the background, callers keep getting the old record until they are done.
+		Executor executor = task -> plugin.getProxy().getScheduler().runAsync(plugin, metrics.attributed("cacheRefresh", task));
+		recordCache = CacheBuilder.from(configuration.getPlayerCacheSpec())
+				.recordStats()
+				.build(CacheLoader.asyncReloading(new CacheLoader<UUID, PlayerRecord>() {
+					@Override
+					public PlayerRecord load(UUID uuid) throws Exception {
+						return loadRecord(uuid);
+					}
+				}, executor));
+
+		metrics.registerCache("player", recordCache);
+		metrics.registerGauge("cache.player.estimatedBytes", this::estimateCacheBytes);
+	}
+
+	private PlayerRecord loadRecord(UUID uuid) {
+		return toRecord(readRouter.forRead("playerRecord").<String, String>opsForHash().multiGet(redisKeys.player(uuid), RECORD_FIELDS));
+	}
+
+	private static PlayerRecord toRecord(List<?> values) {
+		Object server = values.get(0);
+		Object proxy = values.get(1);
+		Object ip = values.get(2);
+		Object online = values.get(3);
+		if (online == null && proxy == null)
+			return PlayerRecord.UNKNOWN;
+
+		return new PlayerRecord(server != null ? server.toString() : null, proxy != null ? proxy.toString() : null,
+				ip != null ? InetAddresses.forString(ip.toString()) : null, online != null ? Long.parseLong(online.toString()) : -1);
+	}
+
+	private synchronized long estimateCacheBytes() {
+		long size = recordCache.size();
+		if (size != estimatedSize) {
+			long bytes = 0;
+			for (PlayerRecord record : recordCache.asMap().values()) {
+				bytes += record.estimateBytes();
+			}
+			estimatedSize = size;
+			estimatedBytes = bytes;
+		}
+		return estimatedBytes;
+	}
+
+	/**
+	 * @return the cached record of a player that is not on this proxy, loaded from Redis if it is not cached
+	 */
+	public PlayerRecord getRecord(UUID uuid) {
+		try {
+			return recordCache.getUnchecked(uuid);
+		} catch (UncheckedExecutionException e) {
+			plugin.getLogger().log(Level.SEVERE, "Unable to get player data", e);
+			throw new RuntimeException("Unable to get player data for " + uuid, e);
+		}
+	}
+
+	/**
+	 * Looks up many players at once. Players on this proxy and in the replica are resolved from memory, the others
+	 * from the cache, and all players missing from the cache are fetched in a single pipeline.
+	 *
+	 * @return the record of every player, {@link PlayerRecord#UNKNOWN} for players that were never seen
+	 */
+	public Map<UUID, PlayerRecord> getRecords(Collection<UUID> uuids) {
+		Map<UUID, PlayerRecord> records = new HashMap<>(uuids.size() * 2);
+		final List<UUID> misses = new ArrayList<>();
+		for (UUID uuid : uuids) {
+			PlayerRecord record = getLocalRecord(uuid);
+			if (record == null)
+				record = recordCache.getIfPresent(uuid);
+
+			if (record != null)
+				records.put(uuid, record);
+			else
+				misses.add(uuid);
+		}
+
+		if (misses.isEmpty())
+			return records;
+
+		CustomRedisTemplate template = readRouter.forRead("playerRecords");
+		List<Object> fetched;
+		if (redisKeys.isCluster()) {
+			// Cluster connections cannot pipeline, and the player hashes are spread over the nodes.
+			fetched = new ArrayList<>(misses.size());
+			for (UUID uuid : misses) {
+				fetched.add(hashOperations.multiGet(redisKeys.player(uuid), RECORD_FIELDS));
+			}
+		} else {
+			fetched = template.executePipelined(new SessionCallback<Object>() {
+				@Override
+				public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+					@SuppressWarnings("unchecked")
+					RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+					for (UUID uuid : misses) {
+						ops.<String, String>opsForHash().multiGet(redisKeys.player(uuid), RECORD_FIELDS);
+					}
+					return null;
+				}
+			}, template.getHashValueSerializer());
+		}
+
+		for (int i = 0; i < misses.size(); i++) {
+			PlayerRecord record = toRecord((List<?>) fetched.get(i));
+			recordCache.put(misses.get(i), record);
+			records.put(misses.get(i), record);
+		}
+		return records;
+	}
 
-	private static <K, V> Cache<K, V> createCache() {
-		// TODO: Allow customization via cache specification, ala ServerListPlus
-		return CacheBuilder.newBuilder()
-				.maximumSize(1000)
-				.expireAfterWrite(1, TimeUnit.HOURS)
-				.build();
+	/**
+	 * @return whether the player can be looked up without a round trip to Redis
+	 */
+	public boolean isCached(UUID uuid) {
+		return getLocalRecord(uuid) != null || recordCache.asMap().containsKey(uuid);
+	}
+
+	private PlayerRecord getLocalRecord(UUID uuid) {
+		ProxiedPlayer player = ProxyServer.getInstance().getPlayer(uuid);
+
+		if (player != null)
+			return new PlayerRecord(player.getServer() != null ? player.getServer().getInfo().getName() : null,
+					serverInformation.getServerName(), player.getAddress().getAddress(), 0);
+
+		PlayerReplica.ReplicatedPlayer replicated = playerReplica.isReady() ? playerReplica.get(uuid) : null;
+		if (replicated != null)
+			return new PlayerRecord(replicated.getServer(), replicated.getProxy(), replicated.getAddress(), 0);
+
+		return null;
 	}
 
 	public String getServer(final UUID uuid) {
@@ -76,21 +235,12 @@ public class CachedDataManager {
 		if (player != null)
 			return player.getServer() != null ? player.getServer().getInfo().getName() : null;
 
-		try {
-			return serverCache.get(uuid, new Callable<String>() {
-				@Override
-				public String call() throws Exception {
-					return Objects.requireNonNull(
-							hashOperations.get("player:" + uuid, "server"),
-							"user not found");
-				}
-			});
-		} catch (ExecutionException | UncheckedExecutionException e) {
-			if (e.getCause() instanceof NullPointerException && e.getCause().getMessage().equals("user not found"))
-				return null; // HACK
-			plugin.getLogger().log(Level.SEVERE, "Unable to get server", e);
-			throw new RuntimeException("Unable to get server for " + uuid, e);
+		if (playerReplica.isReady()) {
+			PlayerReplica.ReplicatedPlayer replicated = playerReplica.get(uuid);
+			return replicated != null ? replicated.getServer() : null;
 		}
+
+		return getRecord(uuid).getServer();
 	}
 
 	public String getProxy(final UUID uuid) {
@@ -99,21 +249,12 @@ public class CachedDataManager {
 		if (player != null)
 			return serverInformation.getServerName();
 
-		try {
-			return proxyCache.get(uuid, new Callable<String>() {
-				@Override
-				public String call() throws Exception {
-					return Objects.requireNonNull(
-							hashOperations.get("player:" + uuid, "proxy"),
-							"user not found");
-				}
-			});
-		} catch (ExecutionException | UncheckedExecutionException e) {
-			if (e.getCause() instanceof NullPointerException && e.getCause().getMessage().equals("user not found"))
-				return null; // HACK
-			plugin.getLogger().log(Level.SEVERE, "Unable to get proxy", e);
-			throw new RuntimeException("Unable to get proxy for " + uuid, e);
+		if (playerReplica.isReady()) {
+			PlayerReplica.ReplicatedPlayer replicated = playerReplica.get(uuid);
+			return replicated != null ? replicated.getProxy() : null;
 		}
+
+		return getRecord(uuid).getProxy();
 	}
 
 	public InetAddress getIp(final UUID uuid) {
@@ -122,78 +263,74 @@ public class CachedDataManager {
 		if (player != null)
 			return player.getAddress().getAddress();
 
-		try {
-			return ipCache.get(uuid, new Callable<InetAddress>() {
-				@Override
-				public InetAddress call() throws Exception {
-					return InetAddresses.forString(
-							Objects.requireNonNull(
-									hashOperations.get("player:" + uuid, "ip"),
-									"user not found"));
-				}
-			});
-		} catch (ExecutionException | UncheckedExecutionException e) {
-			if (e.getCause() instanceof NullPointerException && e.getCause().getMessage().equals("user not found"))
-				return null; // HACK
-			plugin.getLogger().log(Level.SEVERE, "Unable to get IP", e);
-			throw new RuntimeException("Unable to get IP for " + uuid, e);
+		if (playerReplica.isReady()) {
+			PlayerReplica.ReplicatedPlayer replicated = playerReplica.get(uuid);
+			return replicated != null ? replicated.getAddress() : null;
 		}
+
+		return getRecord(uuid).getAddress();
 	}
 
 	public long getLastOnline(final UUID uuid) {
 		ProxiedPlayer player = ProxyServer.getInstance().getPlayer(uuid);
 
-		if (player != null)
+		if (player != null || (playerReplica.isReady() && playerReplica.get(uuid) != null))
 			return 0;
 
-		try {
-			return lastOnlineCache.get(uuid, new Callable<Long>() {
-				@Override
-				public Long call() throws Exception {
-					String result = hashOperations.get("player:" + uuid, "online");
-					return result == null ? -1 : Long.valueOf(result);
-				}
-			});
-		} catch (ExecutionException e) {
-			plugin.getLogger().log(Level.SEVERE, "Unable to get last time online", e);
-			throw new RuntimeException("Unable to get last time online for " + uuid, e);
-		}
+		return getRecord(uuid).getLastOnline();
 	}
 
 	public void invalidate(UUID uuid) {
-		ipCache.invalidate(uuid);
-		lastOnlineCache.invalidate(uuid);
-		serverCache.invalidate(uuid);
-		proxyCache.invalidate(uuid);
+		recordCache.invalidate(uuid);
 	}
 
 	public void playerJoined(UUID uuid, String source, InetAddress address) {
-		proxyCache.put(uuid, source);
-		lastOnlineCache.put(uuid, (long) 0);
-		ipCache.put(uuid, address);
+		// The server change may have overtaken the join.
+		recordCache.asMap().compute(uuid, (key, record) -> {
+			PlayerRecord joined = PlayerRecord.online(source, address);
+			return record != null && record.isOnline() && source.equals(record.getProxy()) ? joined.withServer(record.getServer()) : joined;
+		});
 	}
 
 	public void playerLeft(UUID uuid, long timestamp) {
-		invalidate(uuid);
-		lastOnlineCache.put(uuid, timestamp);
+		recordCache.put(uuid, PlayerRecord.offline(timestamp));
 	}
 
 	public void playerSwitchedServer(UUID uuid, String server) {
-		serverCache.put(uuid, server);
+		// Only the server is known, a missing record is loaded in full on the next lookup.
+		recordCache.asMap().computeIfPresent(uuid, (key, record) -> record.withServer(server));
 	}
 
 	@Getter
 	@RequiredArgsConstructor
 	public static class DataManagerMessage<T> {
 		private final UUID target;
-		private final String source = RedisBungee.getApi().getServerId();
+		private final String source;
 		private final Action action; // for future use!
 		private final T payload;
+		/**
+		 * Start time of the publishing proxy, so receivers can tell a restart from a gap.
+		 */
+		@Setter
+		private long epoch;
+		/**
+		 * Per-proxy sequence number, stamped by the {@link com.imaginarycode.minecraft.redisbungee.pubsub.DataMessagePublisher}.
+		 */
+		@Setter
+		private long sequence;
+
+		public DataManagerMessage(UUID target, Action action, T payload) {
+			this(target, RedisBungee.getApi().getServerId(), action, payload);
+		}
 
 		public enum Action {
 			JOIN,
 			LEAVE,
-			SERVER_CHANGE
+			SERVER_CHANGE,
+			/**
+			 * Many players left at once because their proxy is gone. The target is {@link ProxyLostPayload#TARGET}.
+			 */
+			PROXY_LOST
 		}
 	}
 
@@ -215,4 +352,17 @@ public class CachedDataManager {
 	public static class LogoutPayload {
 		private final long timestamp;
 	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public static class ProxyLostPayload {
+		/**
+		 * The target of PROXY_LOST messages, they concern many players.
+		 */
+		public static final UUID TARGET = new UUID(0, 0);
+
+		private final String proxy;
+		private final long timestamp;
+		private final List<UUID> players;
+	}
 }
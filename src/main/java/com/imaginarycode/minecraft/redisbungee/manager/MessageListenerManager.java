@@ -1,11 +1,13 @@
 package com.imaginarycode.minecraft.redisbungee.manager;
 
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
 import com.imaginarycode.minecraft.redisbungee.pubsub.RedisBungeeReceiverConfiguration;
 
 import java.util.HashMap;
 import java.util.Map;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import javax.annotation.Resource;
+
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
@@ -18,7 +20,7 @@ import org.springframework.stereotype.Component;
 @Component
 public class MessageListenerManager {
 
-	@Autowired
+	@Resource(name = RedisBungeeCore.LISTENER_CONTAINER)
 	private RedisMessageListenerContainer redisMessageListenerContainer;
 
 	private Map<String, MessageListener> registeredListeners = new HashMap<>();
@@ -0,0 +1,165 @@
+package com.imaginarycode.minecraft.redisbungee.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An in-memory copy of the set of players online on the network, kept current from the JOIN and LEAVE data
+ * messages.
+ * <p>
+ * The set is fetched from Redis on startup and every {@value #RESYNC_SECONDS} seconds, to correct anything that
+ * was missed on the data channel, such as the players of a proxy that died. Until the first fetch has completed
+ * {@link #isReady()} is false.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class OnlinePlayersIndex implements InitializingBean {
+
+	private static final int RESYNC_SECONDS = 30;
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private ServerManager serverManager;
+
+	@Autowired
+	private UuidMemberCodec uuidMemberCodec;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	// Guarded by this.
+	private Set<UUID> players = new HashSet<>();
+	private long version;
+	private Snapshot snapshot;
+	private Map<UUID, Boolean> pendingUpdates;
+
+	private volatile boolean ready;
+	private final AtomicBoolean resyncRunning = new AtomicBoolean();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		plugin.getProxy().getScheduler().schedule(plugin, metrics.attributed("onlinePlayersIndex", this::resync), 0, RESYNC_SECONDS, TimeUnit.SECONDS);
+		metrics.registerGauge("onlinePlayersIndex.size", this::size);
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * @return the players online and the version of the set, only rebuilt after it has changed
+	 */
+	public synchronized Snapshot getSnapshot() {
+		if (snapshot == null)
+			snapshot = new Snapshot(version, CompactUuidSet.copyOf(players));
+		return snapshot;
+	}
+
+	private synchronized long size() {
+		return players.size();
+	}
+
+	public void playerJoined(UUID player) {
+		update(player, true);
+	}
+
+	public void playerLeft(UUID player) {
+		update(player, false);
+	}
+
+	private synchronized void update(UUID player, boolean online) {
+		if (online ? players.add(player) : players.remove(player)) {
+			version++;
+			snapshot = null;
+		}
+
+		if (pendingUpdates != null)
+			pendingUpdates.put(player, online);
+	}
+
+	private void resync() {
+		if (!resyncRunning.compareAndSet(false, true))
+			return;
+
+		try {
+			synchronized (this) {
+				pendingUpdates = new HashMap<>();
+			}
+
+			Set<UUID> fetched = new HashSet<>(fetch());
+
+			synchronized (this) {
+				// Messages received during the fetch are newer than what was fetched.
+				for (Map.Entry<UUID, Boolean> update : pendingUpdates.entrySet()) {
+					if (update.getValue())
+						fetched.add(update.getKey());
+					else
+						fetched.remove(update.getKey());
+				}
+				pendingUpdates = null;
+				if (!fetched.equals(players)) {
+					players = fetched;
+					version++;
+					snapshot = null;
+				}
+			}
+			ready = true;
+		} catch (Exception e) {
+			synchronized (this) {
+				pendingUpdates = null;
+			}
+			plugin.getLogger().log(Level.SEVERE, "Unable to fetch the players online", e);
+		} finally {
+			resyncRunning.set(false);
+		}
+	}
+
+	/**
+	 * Fetches the players online on all live proxies from Redis.
+	 */
+	public CompactUuidSet fetch() {
+		List<String> keys = new ArrayList<>();
+		for (String i : serverManager.getServerIds()) {
+			keys.add(redisKeys.proxyPlayers(i));
+		}
+		return uuidMemberCodec.union(keys);
+	}
+
+	/**
+	 * The players online at one point in time. The version increases whenever the set changes, so callers can keep
+	 * what they derived from a snapshot until the version moves on.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	public static class Snapshot {
+		private final long version;
+		private final CompactUuidSet players;
+	}
+}
@@ -3,8 +3,8 @@ package com.imaginarycode.minecraft.redisbungee.manager;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
@@ -15,18 +15,20 @@ import java.util.logging.Level;
 
 import javax.annotation.Resource;
 
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.SetOperations;
-import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import com.imaginarycode.minecraft.redisbungee.util.ReadRouter;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
 
 import de.pesacraft.shares.config.CustomRedisTemplate;
 import lombok.NonNull;
@@ -34,57 +36,67 @@ import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 
 @Component
-public class PlayerManager {
+public class PlayerManager implements InitializingBean {
 
-	@Autowired
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private CustomRedisTemplate redisTemplate;
 
-	@Resource(name = "redisTemplate")
-	private SetOperations<String, String> setOperations;
-
 	@Autowired
 	private ServerManager serverManager;
 
+	@Autowired
+	private ServerPlayersIndex serverPlayersIndex;
+
+	@Autowired
+	private OnlinePlayersIndex onlinePlayersIndex;
+
+	@Autowired
+	private UuidMemberCodec uuidMemberCodec;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
 	private final AtomicInteger globalPlayerCount = new AtomicInteger();
 
 	@Autowired
-	private RedisScript<Long> playerCountScript;
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private ReadRouter readRouter;
 
 	private static final Object SERVER_TO_PLAYERS_KEY = new Object();
 	private final Cache<Object, Multimap<String, UUID>> serverToPlayersCache = CacheBuilder.newBuilder()
 			.expireAfterWrite(5, TimeUnit.SECONDS)
+			.recordStats()
 			.build();
 
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		metrics.registerCache("serverToPlayers", serverToPlayersCache);
+	}
+
 	public Set<UUID> getPlayersOnProxy(String server) {
 		checkArgument(serverManager.existsServer(server), server + " is not a valid proxy ID");
 
-		Set<String> users = setOperations.members("proxy:" + server + ":usersOnline");
-
-		ImmutableSet.Builder<UUID> builder = ImmutableSet.builder();
-		for (String user : users) {
-			builder.add(UUID.fromString(user));
-		}
-
-		return builder.build();
+		return uuidMemberCodec.members(readRouter.forRead("proxyPlayers"), redisKeys.proxyPlayers(server));
 	}
 
-	public final void refreshPlayerCount() {
-		globalPlayerCount.set(getCurrentCount());
+	/**
+	 * Takes over a count read along with something else, see {@link ServerManager#heartbeat()}.
+	 */
+	public final void setPlayerCount(int count) {
+		globalPlayerCount.set(count);
 	}
 
 	public final Multimap<String, UUID> serversToPlayers() {
+		if (serverPlayersIndex.isReady())
+			return serverPlayersIndex.getServersToPlayers();
+
 		try {
 			return serverToPlayersCache.get(SERVER_TO_PLAYERS_KEY, new Callable<Multimap<String, UUID>>() {
 				@Override
 				public Multimap<String, UUID> call() throws Exception {
-					ImmutableMultimap.Builder<String, UUID> builder = ImmutableMultimap.builder();
-
-					for (String server : ProxyServer.getInstance().getServers().keySet()) {
-						for (String uuid : setOperations.members("server:" + server + ":usersOnline")) {
-							builder.put(server, UUID.fromString(uuid));
-						}
-					}
-					return builder.build();
+					return serverPlayersIndex.fetch(ProxyServer.getInstance().getServers().keySet());
 				}
 			});
 		} catch (ExecutionException e) {
@@ -92,54 +104,70 @@ public class PlayerManager {
 		}
 	}
 
-	public final int getCount() {
-		return globalPlayerCount.get();
+	public final int getPlayerCountOnServer(@NonNull String server) {
+		checkArgument(ProxyServer.getInstance().getServers().containsKey(server), "server does not exist");
+
+		return parseCount(readRouter.forRead("playerCounts").<String, String>opsForHash().get(redisKeys.serverCounts(), server));
 	}
 
-	final int getCurrentCount() {
-		Long count = redisTemplate.execute(playerCountScript, ImmutableList.<String>of(), ImmutableList.<String>of());
-		return count.intValue();
+	public final int getPlayerCountOnProxy(@NonNull String proxy) {
+		checkArgument(serverManager.existsServer(proxy), proxy + " is not a valid proxy ID");
+
+		CustomRedisTemplate template = readRouter.forRead("playerCounts");
+		String count = template.<String, String>opsForHash().get(redisKeys.proxyCounts(), proxy);
+		if (count == null) {
+			// Proxies running older versions do not maintain a counter.
+			return template.opsForSet().size(redisKeys.proxyPlayers(proxy)).intValue();
+		}
+		return parseCount(count);
 	}
 
-	public Set<String> getLocalPlayersAsUuidStrings() {
-		ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-		for (ProxiedPlayer player : ProxyServer.getInstance().getPlayers()) {
-			builder.add(player.getUniqueId().toString());
+	/**
+	 * @return the number of players on each server that has players
+	 */
+	public final Map<String, Integer> getServerPlayerCounts() {
+		ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+		for (Map.Entry<String, String> entry : readRouter.forRead("playerCounts").<String, String>opsForHash().entries(redisKeys.serverCounts()).entrySet()) {
+			int count = parseCount(entry.getValue());
+			if (count > 0)
+				builder.put(entry.getKey(), count);
 		}
 		return builder.build();
 	}
 
-	public final Set<UUID> getPlayers() {
-		ImmutableSet.Builder<UUID> setBuilder = ImmutableSet.builder();
-
-		List<String> keys = new ArrayList<>();
-		for (String i : serverManager.getServerIds()) {
-			keys.add("proxy:" + i + ":usersOnline");
+	private static int parseCount(String count) {
+		if (count == null)
+			return 0;
+		try {
+			return Math.max(0, Integer.parseInt(count));
+		} catch (NumberFormatException e) {
+			return 0;
 		}
-		if (!keys.isEmpty()) {
-			Set<String> users = setOperations.union(keys.remove(0), keys);
-			if (users != null && !users.isEmpty()) {
-				for (String user : users) {
-					try {
-						setBuilder = setBuilder.add(UUID.fromString(user));
-					} catch (IllegalArgumentException ignored) {}
-				}
-			}
+	}
+
+	public final int getCount() {
+		return globalPlayerCount.get();
+	}
+
+	public CompactUuidSet getLocalPlayers() {
+		List<UUID> players = new ArrayList<>();
+		for (ProxiedPlayer player : ProxyServer.getInstance().getPlayers()) {
+			players.add(player.getUniqueId());
 		}
-		return setBuilder.build();
+		return CompactUuidSet.copyOf(players);
 	}
 
-	final Set<UUID> getPlayersOnServer(@NonNull String server) {
-		checkArgument(ProxyServer.getInstance().getServers().containsKey(server), "server does not exist");
+	public final Set<UUID> getPlayers() {
+		if (onlinePlayersIndex.isReady())
+			return onlinePlayersIndex.getSnapshot().getPlayers();
 
-		Collection<String> asStrings = setOperations.members("server:" + server + ":usersOnline");
+		return onlinePlayersIndex.fetch();
+	}
 
-		ImmutableSet.Builder<UUID> builder = ImmutableSet.builder();
-		for (String s : asStrings) {
-			builder.add(UUID.fromString(s));
-		}
+	final Set<UUID> getPlayersOnServer(@NonNull String server) {
+		checkArgument(ProxyServer.getInstance().getServers().containsKey(server), "server does not exist");
 
-		return builder.build();
+		return uuidMemberCodec.members(readRouter.forRead("serverPlayers"), redisKeys.serverPlayers(server));
 	}
 
 }
@@ -0,0 +1,344 @@
+package com.imaginarycode.minecraft.redisbungee.manager;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import com.google.common.net.InetAddresses;
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
+
+import de.pesacraft.shares.config.CustomRedisTemplate;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An in-memory replica of the network player table, used when {@code redisbungee.replicatedMode} is enabled.
+ * <p>
+ * The replica is bootstrapped once from Redis and then kept current from the {@code redisbungee-data} channel.
+ * Messages carry a per-proxy sequence number; if a message goes missing for longer than a short grace period
+ * the whole replica is fetched again.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class PlayerReplica implements InitializingBean {
+
+	private static final List<String> RECORD_FIELDS = Arrays.asList("proxy", "server", "ip");
+	private static final long SEQUENCE_GRACE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+	private static final long MAX_TRACKED_GAP = 1024;
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired
+	private ServerManager serverManager;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private CustomRedisTemplate redisTemplate;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private HashOperations<String, String, String> hashOperations;
+
+	@Autowired
+	private UuidMemberCodec uuidMemberCodec;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	private volatile Map<UUID, ReplicatedPlayer> players = new ConcurrentHashMap<>();
+	private volatile boolean ready;
+	private final AtomicBoolean resyncScheduled = new AtomicBoolean();
+	private final Map<String, SequenceTracker> sequences = new ConcurrentHashMap<>();
+
+	// Updates received while a resync is fetching, replayed on top of the fetched table. Guarded by this.
+	private List<Consumer<Map<UUID, ReplicatedPlayer>>> pendingUpdates;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (!isEnabled())
+			return;
+
+		scheduleResync();
+		plugin.getProxy().getScheduler().schedule(plugin, this::checkSequences, 5, 5, TimeUnit.SECONDS);
+	}
+
+	public boolean isEnabled() {
+		return configuration.isReplicatedMode();
+	}
+
+	/**
+	 * Whether the replica has been bootstrapped and may answer lookups on its own.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * @return the replicated player, or null if the player is not online
+	 */
+	public ReplicatedPlayer get(UUID uuid) {
+		return players.get(uuid);
+	}
+
+	public void playerJoined(final UUID uuid, final String proxy, final InetAddress address) {
+		update(map -> {
+			ReplicatedPlayer player = map.get(uuid);
+			map.put(uuid, new ReplicatedPlayer(proxy, player == null ? null : player.getServer(), address));
+		});
+	}
+
+	public void playerLeft(final UUID uuid) {
+		update(map -> map.remove(uuid));
+	}
+
+	public void playerSwitchedServer(final UUID uuid, final String server) {
+		update(map -> {
+			ReplicatedPlayer player = map.get(uuid);
+			map.put(uuid, player == null ? new ReplicatedPlayer(null, server, null) : player.withServer(server));
+		});
+	}
+
+	/**
+	 * Records the sequence number of a message received from {@code source}. Messages of proxies that do not
+	 * stamp their messages carry a sequence of 0 and are not tracked.
+	 */
+	public void checkSequence(String source, long epoch, long sequence) {
+		if (!isEnabled() || sequence <= 0)
+			return;
+
+		SequenceTracker tracker = sequences.computeIfAbsent(source, k -> new SequenceTracker());
+		if (!tracker.accept(epoch, sequence)) {
+			plugin.getLogger().warning("Missed too many messages from " + source + ", resyncing the player table.");
+			scheduleResync();
+		}
+	}
+
+	private void checkSequences() {
+		if (!ready) {
+			// The bootstrap failed, try again.
+			scheduleResync();
+			return;
+		}
+
+		long deadline = System.currentTimeMillis() - SEQUENCE_GRACE_MILLIS;
+		for (Iterator<Map.Entry<String, SequenceTracker>> it = sequences.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, SequenceTracker> entry = it.next();
+			if (!serverManager.existsServer(entry.getKey())) {
+				it.remove();
+			} else if (entry.getValue().clearGapsBefore(deadline)) {
+				plugin.getLogger().warning("Lost a message from " + entry.getKey() + ", resyncing the player table.");
+				scheduleResync();
+			}
+		}
+	}
+
+	private synchronized void update(Consumer<Map<UUID, ReplicatedPlayer>> update) {
+		if (!isEnabled())
+			return;
+
+		update.accept(players);
+		if (pendingUpdates != null)
+			pendingUpdates.add(update);
+	}
+
+	private void scheduleResync() {
+		if (resyncScheduled.compareAndSet(false, true))
+			plugin.getProxy().getScheduler().runAsync(plugin, metrics.attributed("playerReplica", this::resync));
+	}
+
+	private void resync() {
+		try {
+			synchronized (this) {
+				pendingUpdates = new ArrayList<>();
+			}
+			// Everything lost so far is covered by the fetch.
+			for (SequenceTracker tracker : sequences.values()) {
+				tracker.clearGapsBefore(Long.MAX_VALUE);
+			}
+
+			Map<UUID, ReplicatedPlayer> fetched = fetchPlayers();
+
+			synchronized (this) {
+				for (Consumer<Map<UUID, ReplicatedPlayer>> update : pendingUpdates) {
+					update.accept(fetched);
+				}
+				pendingUpdates = null;
+				players = fetched;
+			}
+			ready = true;
+			plugin.getLogger().info("Replicated " + fetched.size() + " players from Redis.");
+		} catch (Exception e) {
+			synchronized (this) {
+				pendingUpdates = null;
+			}
+			plugin.getLogger().log(Level.SEVERE, "Unable to replicate the player table", e);
+		} finally {
+			resyncScheduled.set(false);
+		}
+	}
+
+	private Map<UUID, ReplicatedPlayer> fetchPlayers() {
+		final List<String> proxies = serverManager.getServerIds();
+
+		List<String> keys = new ArrayList<>(proxies.size());
+		for (String proxy : proxies) {
+			keys.add(redisKeys.proxyPlayers(proxy));
+		}
+		List<CompactUuidSet> memberSets = uuidMemberCodec.members(keys);
+
+		final List<UUID> uuids = new ArrayList<>();
+		final List<String> owners = new ArrayList<>();
+		for (int i = 0; i < proxies.size(); i++) {
+			for (UUID member : memberSets.get(i)) {
+				uuids.add(member);
+				owners.add(proxies.get(i));
+			}
+		}
+
+		List<Object> records;
+		if (redisKeys.isCluster()) {
+			// Cluster connections cannot pipeline, and the player hashes are spread over the nodes.
+			records = new ArrayList<>(uuids.size());
+			for (UUID uuid : uuids) {
+				records.add(hashOperations.multiGet(redisKeys.player(uuid), RECORD_FIELDS));
+			}
+		} else {
+			records = redisTemplate.executePipelined(new SessionCallback<Object>() {
+				@Override
+				public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+					@SuppressWarnings("unchecked")
+					RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+					for (UUID uuid : uuids) {
+						ops.<String, String>opsForHash().multiGet(redisKeys.player(uuid), RECORD_FIELDS);
+					}
+					return null;
+				}
+			}, redisTemplate.getHashValueSerializer());
+		}
+
+		Map<UUID, ReplicatedPlayer> fetched = new ConcurrentHashMap<>(uuids.size() * 2);
+		for (int i = 0; i < uuids.size(); i++) {
+			UUID uuid = uuids.get(i);
+
+			List<?> record = (List<?>) records.get(i);
+			Object proxy = record.get(0);
+			Object server = record.get(1);
+			Object ip = record.get(2);
+
+			InetAddress address = null;
+			if (ip != null) {
+				try {
+					address = InetAddresses.forString(ip.toString());
+				} catch (IllegalArgumentException ignored) {
+				}
+			}
+
+			fetched.put(uuid, new ReplicatedPlayer(
+					proxy == null ? owners.get(i) : proxy.toString(),
+					server == null ? null : server.toString(),
+					address));
+		}
+		return fetched;
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public static class ReplicatedPlayer {
+		private final String proxy;
+		private final String server;
+		private final InetAddress address;
+
+		ReplicatedPlayer withServer(String server) {
+			return new ReplicatedPlayer(proxy, server, address);
+		}
+	}
+
+	/**
+	 * Tracks the sequence numbers received from one proxy. Messages may be handled out of order, so a gap
+	 * only counts as lost once it has not been filled within the grace period.
+	 */
+	private static class SequenceTracker {
+		private long epoch;
+		private long highest;
+		private final Map<Long, Long> missing = new HashMap<>();
+
+		/**
+		 * @return false if the gap to the last message is too large to track
+		 */
+		synchronized boolean accept(long epoch, long sequence) {
+			if (epoch != this.epoch) {
+				// The proxy restarted, start over.
+				this.epoch = epoch;
+				highest = sequence;
+				missing.clear();
+				return true;
+			}
+
+			if (sequence <= highest) {
+				missing.remove(sequence);
+				return true;
+			}
+
+			if (sequence - highest > MAX_TRACKED_GAP) {
+				highest = sequence;
+				missing.clear();
+				return false;
+			}
+
+			long now = System.currentTimeMillis();
+			for (long i = highest + 1; i < sequence; i++) {
+				missing.put(i, now);
+			}
+			highest = sequence;
+			return true;
+		}
+
+		/**
+		 * Forgets all gaps that were opened before {@code deadline}.
+		 *
+		 * @return whether any gap was forgotten
+		 */
+		synchronized boolean clearGapsBefore(long deadline) {
+			boolean cleared = false;
+			for (Iterator<Long> it = missing.values().iterator(); it.hasNext(); ) {
+				if (it.next() < deadline) {
+					it.remove();
+					cleared = true;
+				}
+			}
+			return cleared;
+		}
+	}
+}
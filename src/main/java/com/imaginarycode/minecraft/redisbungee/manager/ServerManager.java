@@ -2,9 +2,12 @@ package com.imaginarycode.minecraft.redisbungee.manager;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
@@ -15,38 +18,92 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisServerCommands;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.ScriptRegistry;
 
+import de.pesacraft.bungee.core.server.ServerInformation;
 import de.pesacraft.shares.config.CustomRedisTemplate;
 import lombok.Getter;
 import lombok.NonNull;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
+import static com.imaginarycode.minecraft.redisbungee.util.RedisBytes.raw;
+import static com.imaginarycode.minecraft.redisbungee.util.RedisBytes.string;
+
 @Component
 public class ServerManager implements InitializingBean {
 
+	private static final long HEARTBEAT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * Where proxies with {@link RedisBungeeConfiguration#isLivenessKeys()} announce themselves, with a
+	 * {@value #JOIN} or {@value #LEAVE} message followed by the proxy id.
+	 */
+	public static final String MEMBERSHIP_CHANNEL = "redisbungee-membership";
+	public static final String JOIN = "join:";
+	public static final String LEAVE = "leave:";
+
+	// With liveness keys, the heartbeats between reloads of all proxies in case a message was missed.
+	private static final int HEARTBEATS_PER_RELOAD = 20;
+
 	@Autowired
 	private RedisBungee plugin;
 
-	@Autowired
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private CustomRedisTemplate redisTemplate;
 
-	@Resource(name = "redisTemplate")
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private HashOperations<String, String, String> hashOperations;
 
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired
+	private ServerInformation serverInformation;
+
+	@Autowired
+	private ScriptRegistry scriptRegistry;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	@SuppressWarnings("rawtypes")
+	private RedisScript<List> heartbeatScript;
+
 	@Getter
 	private volatile List<String> serverIds;
+	/**
+	 * Bumped by every membership message, so a list read from Redis does not overwrite a change that arrived while it
+	 * was being read. Only changed while holding the lock of this object.
+	 */
+	private volatile long membershipVersion;
+	/**
+	 * The proxies that were lagging behind at the last heartbeat.
+	 */
+	@Getter
+	private volatile List<String> laggedServerIds = ImmutableList.of();
 	private final AtomicInteger nagAboutServers = new AtomicInteger();
+	// Only used by the heartbeat task.
+	private int heartbeatsUntilReload;
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		updateServerIds();
+		if (configuration.isLivenessKeys())
+			enableExpiryEvents();
 	}
 
 	public boolean existsServer(String serverId) {
@@ -54,31 +111,155 @@ public class ServerManager implements InitializingBean {
 	}
 
 	public void updateServerIds() {
-		serverIds = getCurrentServerIds(true, false);
+		long version;
+		List<String> ids;
+		do {
+			version = membershipVersion;
+			ids = getCurrentServerIds(true, false);
+		} while (!replaceServerIds(ids, version));
 	}
 
-	public List<String> getCurrentServerIds(boolean nag, boolean lagged) {
-		long time = redisTemplate.execute(RedisConnection::time);
+	/**
+	 * @param version the membership version from before {@code ids} were read
+	 * @return false if a membership message arrived meanwhile, in which case {@code ids} may be outdated and are dropped
+	 */
+	private synchronized boolean replaceServerIds(List<String> ids, long version) {
+		if (membershipVersion != version)
+			return false;
+		serverIds = ids;
+		return true;
+	}
+
+	/**
+	 * Stamps this proxy's heartbeat and reads the live and lagged proxies in the same script call. With liveness keys
+	 * the live and lagged proxies are only read every {@value #HEARTBEATS_PER_RELOAD} heartbeats, since membership
+	 * messages keep them up to date in between. The other heartbeats only read the counters of the known proxies.
+	 *
+	 * @return the number of players on live proxies
+	 */
+	public int heartbeat() {
+		String proxyId = serverInformation.getServerName();
+		boolean livenessKeys = configuration.isLivenessKeys();
+		boolean reload = !livenessKeys || --heartbeatsUntilReload <= 0;
+		long version = membershipVersion;
+
+		List<byte[]> args = new ArrayList<>(8);
+		args.add(raw(proxyId));
+		args.add(raw(String.valueOf(HEARTBEAT_TIMEOUT)));
+		args.add(raw(livenessKeys ? String.valueOf(HEARTBEAT_TIMEOUT) : "0"));
+		args.add(raw(MEMBERSHIP_CHANNEL));
+		args.add(raw(JOIN + proxyId));
+		args.add(raw(reload ? "1" : "0"));
+		if (!reload) {
+			for (String id : serverIds) {
+				args.add(raw(id));
+			}
+		}
+		List<?> result = scriptRegistry.execute(heartbeatScript,
+				Arrays.asList(redisKeys.heartbeats(), redisKeys.proxyCounts(), redisKeys.liveness(proxyId)), args.toArray());
+		int liveCount = ((Number) result.get(1)).intValue();
+		int uncountedCount = ((Number) result.get(2)).intValue();
+		int total = ((Number) result.get(0)).intValue();
+		for (int i = 3 + liveCount; i < 3 + liveCount + uncountedCount; i++) {
+			total += countPlayers(string(result.get(i)));
+		}
+		if (!reload)
+			return total;
 
-		int nagTime = 0;
+		ImmutableList.Builder<String> live = ImmutableList.builder();
+		for (int i = 3; i < 3 + liveCount; i++) {
+			live.add(string(result.get(i)));
+		}
 
-		if (nag) {
-			nagTime = nagAboutServers.decrementAndGet();
-			if (nagTime <= 0) {
-				nagAboutServers.set(10);
+		boolean nag = nagDue();
+		ImmutableList.Builder<String> lagged = ImmutableList.builder();
+		for (int i = 3 + liveCount + uncountedCount; i + 1 < result.size(); i += 2) {
+			String laggedId = string(result.get(i));
+			lagged.add(laggedId);
+			if (nag) {
+				long behind = ((Number) result.get(i + 1)).longValue();
+				plugin.getLogger().severe(laggedId + " is " + TimeUnit.MILLISECONDS.toSeconds(behind) + " seconds behind! (Time not synchronized or server down?)");
 			}
 		}
+		laggedServerIds = lagged.build();
+
+		// If a proxy joined or left during the script, the live proxies are taken over at the next heartbeat instead.
+		if (replaceServerIds(live.build(), version))
+			heartbeatsUntilReload = HEARTBEATS_PER_RELOAD;
+		return total;
+	}
+
+	/**
+	 * Counts the players of a proxy without a counter, which older versions do not keep. Its set is in another slot
+	 * than the counters in cluster mode, so the heartbeat script leaves it to the caller.
+	 */
+	private int countPlayers(String proxyId) {
+		final byte[] key = raw(redisKeys.proxyPlayers(proxyId));
+		Long size = redisTemplate.execute((RedisCallback<Long>) connection -> connection.sCard(key));
+		return size != null ? size.intValue() : 0;
+	}
+
+	/**
+	 * Removes this proxy's liveness key and tells the other proxies it left.
+	 */
+	public void leave() {
+		if (!configuration.isLivenessKeys())
+			return;
+
+		final byte[] key = raw(redisKeys.liveness(serverInformation.getServerName()));
+		final byte[] message = raw(LEAVE + serverInformation.getServerName());
+		redisTemplate.execute((RedisCallback<Long>) connection -> {
+			connection.del(key);
+			return connection.publish(raw(MEMBERSHIP_CHANNEL), message);
+		});
+	}
+
+	public synchronized void proxyJoined(String proxyId) {
+		membershipVersion++;
+		if (!serverIds.contains(proxyId))
+			serverIds = ImmutableList.<String>builder().addAll(serverIds).add(proxyId).build();
+	}
+
+	public synchronized void proxyLeft(String proxyId) {
+		membershipVersion++;
+		if (serverIds.contains(proxyId))
+			serverIds = ImmutableList.copyOf(Iterables.filter(serverIds, id -> !id.equals(proxyId)));
+	}
+
+	/**
+	 * Proxies that stop without leaving are only noticed through their key expiring, which Redis only publishes if
+	 * asked to.
+	 */
+	private void enableExpiryEvents() {
+		try {
+			redisTemplate.execute((RedisCallback<Void>) connection -> {
+				List<String> config = connection.getConfig("notify-keyspace-events");
+				String flags = config.size() > 1 ? config.get(1) : "";
+				if (!flags.contains("E") || !(flags.contains("x") || flags.contains("A")))
+					connection.setConfig("notify-keyspace-events", flags + "Ex");
+				return null;
+			});
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.WARNING, "Unable to enable keyspace notifications for expired keys, proxies that stop without leaving are only noticed once a minute.", e);
+		}
+	}
+
+	public List<String> getCurrentServerIds(boolean nag, boolean lagged) {
+		long time = redisTemplate.execute(RedisConnection::time);
+
+		nag = nag && nagDue();
 
 		ImmutableList.Builder<String> servers = ImmutableList.builder();
-		Map<String, String> heartbeats = hashOperations.entries("heartbeats");
+		Map<String, String> heartbeats = hashOperations.entries(redisKeys.heartbeats());
 
 		for (Map.Entry<String, String> entry : heartbeats.entrySet()) {
 			try {
 				long stamp = Long.parseLong(entry.getValue());
-				if (lagged ? time >= stamp + 30 : time <= stamp + 30)
+				// Heartbeats hold the Redis time in milliseconds.
+				if (lagged ? time >= stamp + HEARTBEAT_TIMEOUT : time <= stamp + HEARTBEAT_TIMEOUT)
 					servers.add(entry.getKey());
-				else if (nag && nagTime <= 0) {
-					plugin.getLogger().severe(entry.getKey() + " is " + (time - stamp) + " seconds behind! (Time not synchronized or server down?)");
+				else if (nag) {
+					plugin.getLogger().severe(entry.getKey() + " is " + TimeUnit.MILLISECONDS.toSeconds(time - stamp) + " seconds behind! (Time not synchronized or server down?)");
 				}
 			} catch (NumberFormatException ignored) {
 			}
@@ -87,6 +268,17 @@ public class ServerManager implements InitializingBean {
 
 	}
 
+	/**
+	 * @return whether lagged proxies should be logged, which they are every tenth time
+	 */
+	private boolean nagDue() {
+		int nagTime = nagAboutServers.decrementAndGet();
+		if (nagTime <= 0) {
+			nagAboutServers.set(10);
+		}
+		return nagTime <= 0;
+	}
+
 	public final void sendProxyCommand(@NonNull String proxyId, @NonNull String command) {
 		checkArgument(getServerIds().contains(proxyId) || proxyId.equals("allservers"), "proxyId is invalid");
 		sendChannelMessage("redisbungee-" + proxyId, command);
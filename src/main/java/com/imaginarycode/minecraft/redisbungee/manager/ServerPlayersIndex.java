@@ -0,0 +1,155 @@
+package com.imaginarycode.minecraft.redisbungee.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
+
+/**
+ * An in-memory index of which players are on which server, kept current from the SERVER_CHANGE and LEAVE
+ * data messages.
+ * <p>
+ * The index is fetched from Redis on startup and every {@value #RESYNC_SECONDS} seconds, to correct anything
+ * that was missed on the data channel. Until the first fetch has completed {@link #isReady()} is false.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class ServerPlayersIndex implements InitializingBean {
+
+	private static final int RESYNC_SECONDS = 30;
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private UuidMemberCodec uuidMemberCodec;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	// Guarded by this.
+	private Map<UUID, String> servers = new HashMap<>();
+	private ImmutableSetMultimap<String, UUID> snapshot;
+	private Map<UUID, String> pendingUpdates;
+
+	private volatile boolean ready;
+	private final AtomicBoolean resyncRunning = new AtomicBoolean();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		plugin.getProxy().getScheduler().schedule(plugin, metrics.attributed("serverPlayersIndex", this::resync), 0, RESYNC_SECONDS, TimeUnit.SECONDS);
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * @return an immutable view of the index, only rebuilt after it has changed
+	 */
+	public synchronized SetMultimap<String, UUID> getServersToPlayers() {
+		if (snapshot == null) {
+			ImmutableSetMultimap.Builder<String, UUID> builder = ImmutableSetMultimap.builder();
+			for (Map.Entry<UUID, String> entry : servers.entrySet()) {
+				builder.put(entry.getValue(), entry.getKey());
+			}
+			snapshot = builder.build();
+		}
+		return snapshot;
+	}
+
+	public void playerSwitchedServer(UUID player, String server) {
+		update(player, server);
+	}
+
+	public void playerLeft(UUID player) {
+		update(player, null);
+	}
+
+	private synchronized void update(UUID player, String server) {
+		String previous = server == null ? servers.remove(player) : servers.put(player, server);
+		if (previous == null ? server != null : !previous.equals(server))
+			snapshot = null;
+
+		if (pendingUpdates != null)
+			pendingUpdates.put(player, server);
+	}
+
+	private void resync() {
+		if (!resyncRunning.compareAndSet(false, true))
+			return;
+
+		try {
+			synchronized (this) {
+				pendingUpdates = new HashMap<>();
+			}
+
+			Map<UUID, String> fetched = new HashMap<>();
+			for (Map.Entry<String, Collection<UUID>> entry : fetch(plugin.getProxy().getServers().keySet()).asMap().entrySet()) {
+				for (UUID player : entry.getValue()) {
+					fetched.put(player, entry.getKey());
+				}
+			}
+
+			synchronized (this) {
+				// Messages received during the fetch are newer than what was fetched.
+				for (Map.Entry<UUID, String> update : pendingUpdates.entrySet()) {
+					if (update.getValue() == null)
+						fetched.remove(update.getKey());
+					else
+						fetched.put(update.getKey(), update.getValue());
+				}
+				pendingUpdates = null;
+				servers = fetched;
+				snapshot = null;
+			}
+			ready = true;
+		} catch (Exception e) {
+			synchronized (this) {
+				pendingUpdates = null;
+			}
+			plugin.getLogger().log(Level.SEVERE, "Unable to fetch the players on each server", e);
+		} finally {
+			resyncRunning.set(false);
+		}
+	}
+
+	/**
+	 * Fetches the players on the given servers from Redis in a single round trip.
+	 */
+	public ImmutableSetMultimap<String, UUID> fetch(Collection<String> serverNames) {
+		List<String> names = new ArrayList<>(serverNames);
+		List<String> keys = new ArrayList<>(names.size());
+		for (String name : names) {
+			keys.add(redisKeys.serverPlayers(name));
+		}
+
+		List<CompactUuidSet> members = uuidMemberCodec.members(keys);
+		ImmutableSetMultimap.Builder<String, UUID> builder = ImmutableSetMultimap.builder();
+		for (int i = 0; i < names.size(); i++) {
+			builder.putAll(names.get(i), members.get(i));
+		}
+		return builder.build();
+	}
+}
@@ -0,0 +1,36 @@
+package com.imaginarycode.minecraft.redisbungee.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeAPI;
+
+/**
+ * Attributes the Redis commands of each {@link RedisBungeeAPI} call to {@code api.<method>}, see
+ * {@link RedisBungeeMetrics#caller(String)}. Calls the API makes to itself stay attributed to the method that was
+ * called from outside.
+ * <p>
+ * The aspect is woven into the API at build time, like {@code @Configurable}, so the API methods stay final. AspectJ
+ * creates its instance; the Spring context only injects the metrics into it, see
+ * {@link com.imaginarycode.minecraft.redisbungee.RedisBungeeCore#apiCallerAspect()}.
+ *
+ * @since 0.3.10
+ */
+@Aspect
+public class ApiCallerAspect {
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	@Around("execution(public * com.imaginarycode.minecraft.redisbungee.RedisBungeeAPI.*(..)) && !execution(* afterPropertiesSet())")
+	public Object attribute(ProceedingJoinPoint call) throws Throwable {
+		// Until the context has injected the metrics there is nothing to attribute to.
+		if (metrics == null)
+			return call.proceed();
+		try (RedisBungeeMetrics.CallerScope ignored = metrics.caller("api." + call.getSignature().getName())) {
+			return call.proceed();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.imaginarycode.minecraft.redisbungee.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Hands out connections that time every Redis command and count it for the current
+ * {@link RedisBungeeMetrics#caller(String) caller}.
+ * <p>
+ * Commands queued in a pipeline or transaction return immediately, they are only counted. The round trip is
+ * timed as {@code closePipeline} or {@code exec}.
+ *
+ * @since 0.3.10
+ */
+class InstrumentedConnectionFactory implements RedisConnectionFactory {
+
+	private static final ImmutableSet<String> UNTIMED = ImmutableSet.of(
+			"close", "isClosed", "getNativeConnection", "isQueueing", "isPipelined", "openPipeline", "multi",
+			"isSubscribed", "getSubscription", "subscribe", "pSubscribe", "getSentinelConnection");
+	private static final ImmutableSet<String> ROUND_TRIPS = ImmutableSet.of("closePipeline", "exec");
+
+	private final RedisConnectionFactory delegate;
+	private final RedisBungeeMetrics metrics;
+
+	private final Map<Method, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> callers = new ConcurrentHashMap<>();
+
+	InstrumentedConnectionFactory(RedisConnectionFactory delegate, RedisBungeeMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public RedisConnection getConnection() {
+		return instrument(delegate.getConnection(), RedisConnection.class);
+	}
+
+	@Override
+	public RedisClusterConnection getClusterConnection() {
+		return instrument(delegate.getClusterConnection(), RedisClusterConnection.class);
+	}
+
+	@Override
+	public boolean getConvertPipelineAndTxResults() {
+		return delegate.getConvertPipelineAndTxResults();
+	}
+
+	@Override
+	public RedisSentinelConnection getSentinelConnection() {
+		return delegate.getSentinelConnection();
+	}
+
+	@Override
+	public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+		return delegate.translateExceptionIfPossible(ex);
+	}
+
+	private <T extends RedisConnection> T instrument(final T connection, Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getDeclaringClass() == Object.class || UNTIMED.contains(method.getName()))
+					return call(connection, method, args);
+
+				if (!ROUND_TRIPS.contains(method.getName())) {
+					callers.computeIfAbsent(metrics.getCaller(), caller -> metrics.counter("redis.caller." + caller)).increment();
+					if (connection.isPipelined() || connection.isQueueing())
+						return call(connection, method, args);
+				}
+
+				long start = System.nanoTime();
+				try {
+					return call(connection, method, args);
+				} finally {
+					histograms.computeIfAbsent(method, m -> metrics.getHistogram("redis." + m.getName()))
+							.record(System.nanoTime() - start);
+				}
+			}
+		}));
+	}
+
+	private static Object call(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.imaginarycode.minecraft.redisbungee.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with power-of-two microsecond buckets, from a microsecond up to about 17 minutes.
+ * Percentiles are reported as the upper bound of the bucket they fall into.
+ *
+ * @since 0.3.10
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 31;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalMicros = new LongAdder();
+	private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+		buckets[bucket(micros)].increment();
+		count.increment();
+		totalMicros.add(micros);
+		maxMicros.accumulate(micros);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMeanMicros() {
+		long n = count.sum();
+		return n == 0 ? 0 : totalMicros.sum() / n;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros.get();
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket containing the percentile, in microseconds
+	 */
+	public long getPercentileMicros(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets[i].sum();
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(1L << i, getMaxMicros());
+		}
+		return getMaxMicros();
+	}
+
+	private static int bucket(long micros) {
+		// Bucket i holds values up to 2^i.
+		int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+		return Math.min(bucket, BUCKETS - 1);
+	}
+}
@@ -0,0 +1,13 @@
+package com.imaginarycode.minecraft.redisbungee.metrics;
+
+/**
+ * Exports RedisBungee's metrics to a monitoring system. Reporters are either Spring beans or added with
+ * {@link RedisBungeeMetrics#addReporter(MetricsReporter)}, and are called from a scheduler thread every
+ * {@code redisbungee.metricsReportSeconds}.
+ *
+ * @since 0.3.10
+ */
+public interface MetricsReporter {
+
+	void report(RedisBungeeMetrics metrics);
+}
@@ -0,0 +1,236 @@
+package com.imaginarycode.minecraft.redisbungee.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+
+import de.pesacraft.shares.config.CustomRedisTemplate;
+import lombok.NonNull;
+
+/**
+ * Counters, gauges, cache statistics and latency histograms describing what RedisBungee does with Redis.
+ * <p>
+ * Every Redis command sent through a template made by {@link #instrument(CustomRedisTemplate, RedisConnectionFactory)}
+ * is timed in a {@code redis.<command>} histogram and counted in a {@code redis.caller.<caller>} counter, where the
+ * caller is whatever is set with {@link #caller(String)} on the issuing thread. RedisBungee sends its commands through
+ * such a template of its own, so the commands of other plugins using the same Redis are not counted. The metrics are
+ * handed to every {@link MetricsReporter} each {@code redisbungee.metricsReportSeconds}.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class RedisBungeeMetrics implements InitializingBean {
+
+	public static final String UNKNOWN_CALLER = "other";
+
+	private static final ThreadLocal<String> CALLER = new ThreadLocal<>();
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired(required = false)
+	private List<MetricsReporter> reporters = new CopyOnWriteArrayList<>();
+
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+	private final Map<String, Cache<?, ?>> caches = new ConcurrentHashMap<>();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		reporters = new CopyOnWriteArrayList<>(reporters);
+
+		int interval = configuration.getMetricsReportSeconds();
+		if (interval > 0)
+			plugin.getProxy().getScheduler().schedule(plugin, this::report, interval, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return a new template with the serializers of {@code template}, sending its commands through
+	 * {@code connectionFactory} and recording them. {@code template} itself is left as it is.
+	 */
+	public CustomRedisTemplate instrument(@NonNull CustomRedisTemplate template, @NonNull RedisConnectionFactory connectionFactory) {
+		CustomRedisTemplate instrumented = new CustomRedisTemplate();
+		instrumented.setConnectionFactory(new InstrumentedConnectionFactory(connectionFactory, this));
+		instrumented.setDefaultSerializer(template.getDefaultSerializer());
+		instrumented.setKeySerializer(template.getKeySerializer());
+		instrumented.setValueSerializer(template.getValueSerializer());
+		instrumented.setHashKeySerializer(template.getHashKeySerializer());
+		instrumented.setHashValueSerializer(template.getHashValueSerializer());
+		instrumented.setStringSerializer(template.getStringSerializer());
+		instrumented.afterPropertiesSet();
+		return instrumented;
+	}
+
+	public void increment(String name) {
+		increment(name, 1);
+	}
+
+	public void increment(String name, long delta) {
+		counter(name).add(delta);
+	}
+
+	LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, k -> new LongAdder());
+	}
+
+	public long getCount(String name) {
+		LongAdder counter = counters.get(name);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * @return a sorted snapshot of all counters
+	 */
+	public SortedMap<String, Long> getCounters() {
+		SortedMap<String, Long> snapshot = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().sum());
+		}
+		return snapshot;
+	}
+
+	public void recordLatency(String name, long nanos) {
+		getHistogram(name).record(nanos);
+	}
+
+	public LatencyHistogram getHistogram(String name) {
+		return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+	}
+
+	/**
+	 * @return a sorted view of all histograms
+	 */
+	public SortedMap<String, LatencyHistogram> getHistograms() {
+		return new TreeMap<>(histograms);
+	}
+
+	/**
+	 * Registers a value that is read whenever the metrics are reported, such as the length of a queue.
+	 */
+	public void registerGauge(@NonNull String name, @NonNull LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * @return a sorted snapshot of all gauges
+	 */
+	public SortedMap<String, Long> getGauges() {
+		SortedMap<String, Long> snapshot = new TreeMap<>();
+		for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().getAsLong());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Registers a cache for its statistics to be reported. The cache must be built with
+	 * {@link com.google.common.cache.CacheBuilder#recordStats()}.
+	 */
+	public void registerCache(@NonNull String name, @NonNull Cache<?, ?> cache) {
+		caches.put(name, cache);
+		registerGauge("cache." + name + ".size", cache::size);
+	}
+
+	/**
+	 * @return a sorted snapshot of the statistics of all registered caches
+	 */
+	public SortedMap<String, CacheStats> getCacheStats() {
+		SortedMap<String, CacheStats> snapshot = new TreeMap<>();
+		for (Map.Entry<String, Cache<?, ?>> entry : caches.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().stats());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Attributes the Redis commands this thread sends to {@code caller}, until the returned scope is closed:
+	 * <pre>
+	 * try (RedisBungeeMetrics.CallerScope ignored = metrics.caller("integrityCheck")) {
+	 *     ...
+	 * }
+	 * </pre>
+	 * Scopes opened inside another scope do not change the caller, so API methods used by a listener are
+	 * attributed to the listener.
+	 */
+	public CallerScope caller(@NonNull String caller) {
+		if (CALLER.get() != null)
+			return CallerScope.NESTED;
+		CALLER.set(caller);
+		return CallerScope.OUTERMOST;
+	}
+
+	/**
+	 * @return a task that runs {@code task} as {@code caller}, for handing to the scheduler
+	 */
+	public Runnable attributed(@NonNull final String caller, @NonNull final Runnable task) {
+		return () -> {
+			try (CallerScope ignored = caller(caller)) {
+				task.run();
+			}
+		};
+	}
+
+	/**
+	 * @return the caller set on this thread, or {@link #UNKNOWN_CALLER}
+	 */
+	public String getCaller() {
+		String caller = CALLER.get();
+		return caller != null ? caller : UNKNOWN_CALLER;
+	}
+
+	public void addReporter(@NonNull MetricsReporter reporter) {
+		reporters.add(reporter);
+	}
+
+	public void removeReporter(@NonNull MetricsReporter reporter) {
+		reporters.remove(reporter);
+	}
+
+	private void report() {
+		for (MetricsReporter reporter : reporters) {
+			try {
+				reporter.report(this);
+			} catch (Exception e) {
+				plugin.getLogger().log(Level.SEVERE, "Unable to report metrics to " + reporter, e);
+			}
+		}
+	}
+
+	public enum CallerScope implements AutoCloseable {
+		OUTERMOST {
+			@Override
+			public void close() {
+				CALLER.remove();
+			}
+		},
+		NESTED {
+			@Override
+			public void close() {
+			}
+		};
+
+		@Override
+		public abstract void close();
+	}
+}
@@ -0,0 +1,54 @@
+package com.imaginarycode.minecraft.redisbungee.pubsub;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.listener.PubSubMessageListener;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
+
+/**
+ * Receives binary data frames. Unlike the other channels these bypass the JSON message serializer.
+ * <p>
+ * The messages of a frame are handed to the {@link MessageDispatcher} in order.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class BinaryDataReceiver implements MessageListener {
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private DataMessageCodec codec;
+
+	@Autowired
+	private PubSubMessageListener pubSubMessageListener;
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		List<DataManagerMessage<?>> messages;
+		try {
+			messages = codec.decode(message.getBody());
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.WARNING, "Unable to decode binary data frame", e);
+			return;
+		}
+
+		for (DataManagerMessage<?> dataMessage : messages) {
+			pubSubMessageListener.dispatchDataMessage(dataMessage);
+		}
+	}
+
+	public Topic getTopic() {
+		return new ChannelTopic(DataMessagePublisher.BINARY_DATA_CHANNEL);
+	}
+}
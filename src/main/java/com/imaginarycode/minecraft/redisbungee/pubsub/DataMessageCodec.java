@@ -0,0 +1,240 @@
+package com.imaginarycode.minecraft.redisbungee.pubsub;
+
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LoginPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LogoutPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ProxyLostPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ServerChangePayload;
+
+/**
+ * Encodes and decodes {@link DataManagerMessage}s, either as JSON or in the compact binary format.
+ * <p>
+ * A binary frame starts with the format version and the number of messages in the frame, followed by the
+ * messages. Each message consists of:
+ * <ul>
+ * <li>the action ordinal as a byte</li>
+ * <li>the target UUID as two longs</li>
+ * <li>the source proxy as a {@link ServerNameRegistry} id</li>
+ * <li>the epoch and sequence number as longs</li>
+ * <li>the payload: the address length and bytes for JOIN, the timestamp for LEAVE, the new and previous
+ * server ids for SERVER_CHANGE and the lost proxy's id, the timestamp, the number of players and their UUIDs for
+ * PROXY_LOST</li>
+ * </ul>
+ * The action ordinals are part of the format, new actions may only be appended. Frames of version 1 carried a
+ * single message and no count, they are still understood.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class DataMessageCodec {
+
+	public static final int BINARY_VERSION = 2;
+	/**
+	 * Advertised by proxies that understand PROXY_LOST messages. The frames themselves are still of
+	 * {@link #BINARY_VERSION}.
+	 */
+	public static final int PROXY_LOST_VERSION = 3;
+
+	private static final int SINGLE_MESSAGE_VERSION = 1;
+
+	private static final int NO_SERVER = -1;
+	private static final int MAX_LOST_PLAYERS = 1 << 20;
+	private static final DataManagerMessage.Action[] ACTIONS = DataManagerMessage.Action.values();
+
+	@Autowired
+	private Gson gson;
+
+	@Autowired
+	private ServerNameRegistry serverNameRegistry;
+
+	private final JsonParser parser = new JsonParser();
+
+	public String encodeJson(DataManagerMessage<?> message) {
+		return gson.toJson(message);
+	}
+
+	public DataManagerMessage<?> decodeJson(String json) {
+		return fromJson(parser.parse(json).getAsJsonObject());
+	}
+
+	DataManagerMessage<?> fromJson(JsonObject object) {
+		DataManagerMessage.Action action = DataManagerMessage.Action.valueOf(object.get("action").getAsString());
+		Object payload = gson.fromJson(object.get("payload"), payloadType(action));
+
+		DataManagerMessage<Object> message = new DataManagerMessage<>(
+				UUID.fromString(object.get("target").getAsString()),
+				object.get("source").getAsString(),
+				action,
+				payload);
+
+		// Proxies running older versions do not stamp their messages.
+		JsonElement epoch = object.get("epoch");
+		JsonElement sequence = object.get("sequence");
+		if (epoch != null && sequence != null) {
+			message.setEpoch(epoch.getAsLong());
+			message.setSequence(sequence.getAsLong());
+		}
+		return message;
+	}
+
+	public byte[] encode(DataManagerMessage<?> message) {
+		return encode(Collections.<DataManagerMessage<?>>singletonList(message));
+	}
+
+	public byte[] encode(List<? extends DataManagerMessage<?>> messages) {
+		ByteArrayDataOutput out = ByteStreams.newDataOutput(8 + messages.size() * 64);
+		out.writeByte(BINARY_VERSION);
+		out.writeInt(messages.size());
+		for (DataManagerMessage<?> message : messages) {
+			write(message, out);
+		}
+		return out.toByteArray();
+	}
+
+	public List<DataManagerMessage<?>> decode(byte[] data) {
+		ByteArrayDataInput in = ByteStreams.newDataInput(data);
+		int version = in.readUnsignedByte();
+		if (version == SINGLE_MESSAGE_VERSION)
+			return Collections.<DataManagerMessage<?>>singletonList(read(in));
+		if (version != BINARY_VERSION)
+			throw new IllegalArgumentException("Unsupported data message version " + version);
+
+		int count = in.readInt();
+		if (count < 0 || count > data.length)
+			throw new IllegalArgumentException("Invalid data message count " + count);
+
+		List<DataManagerMessage<?>> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			messages.add(read(in));
+		}
+		return messages;
+	}
+
+	void write(DataManagerMessage<?> message, ByteArrayDataOutput out) {
+		out.writeByte(message.getAction().ordinal());
+		out.writeLong(message.getTarget().getMostSignificantBits());
+		out.writeLong(message.getTarget().getLeastSignificantBits());
+		out.writeInt(serverNameRegistry.getId(message.getSource()));
+		out.writeLong(message.getEpoch());
+		out.writeLong(message.getSequence());
+
+		switch (message.getAction()) {
+			case JOIN:
+				InetAddress address = ((LoginPayload) message.getPayload()).getAddress();
+				byte[] raw = address != null ? address.getAddress() : new byte[0];
+				out.writeByte(raw.length);
+				out.write(raw);
+				break;
+			case LEAVE:
+				out.writeLong(((LogoutPayload) message.getPayload()).getTimestamp());
+				break;
+			case SERVER_CHANGE:
+				ServerChangePayload change = (ServerChangePayload) message.getPayload();
+				out.writeInt(serverId(change.getServer()));
+				out.writeInt(serverId(change.getOldServer()));
+				break;
+			case PROXY_LOST:
+				ProxyLostPayload lost = (ProxyLostPayload) message.getPayload();
+				out.writeInt(serverNameRegistry.getId(lost.getProxy()));
+				out.writeLong(lost.getTimestamp());
+				out.writeInt(lost.getPlayers().size());
+				for (UUID player : lost.getPlayers()) {
+					out.writeLong(player.getMostSignificantBits());
+					out.writeLong(player.getLeastSignificantBits());
+				}
+				break;
+		}
+	}
+
+	DataManagerMessage<?> read(ByteArrayDataInput in) {
+		int ordinal = in.readUnsignedByte();
+		if (ordinal >= ACTIONS.length)
+			throw new IllegalArgumentException("Unknown data message action " + ordinal);
+
+		DataManagerMessage.Action action = ACTIONS[ordinal];
+		UUID target = new UUID(in.readLong(), in.readLong());
+		String source = serverNameRegistry.getName(in.readInt());
+		long epoch = in.readLong();
+		long sequence = in.readLong();
+
+		Object payload;
+		switch (action) {
+			case JOIN:
+				byte[] raw = new byte[in.readUnsignedByte()];
+				in.readFully(raw);
+				try {
+					payload = new LoginPayload(raw.length > 0 ? InetAddress.getByAddress(raw) : null);
+				} catch (UnknownHostException e) {
+					throw new IllegalArgumentException("Invalid address in data message", e);
+				}
+				break;
+			case LEAVE:
+				payload = new LogoutPayload(in.readLong());
+				break;
+			case SERVER_CHANGE:
+				String server = serverName(in.readInt());
+				payload = new ServerChangePayload(server, serverName(in.readInt()));
+				break;
+			case PROXY_LOST:
+				String proxy = serverNameRegistry.getName(in.readInt());
+				long timestamp = in.readLong();
+				int count = in.readInt();
+				if (count < 0 || count > MAX_LOST_PLAYERS)
+					throw new IllegalArgumentException("Invalid number of lost players " + count);
+				List<UUID> players = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					players.add(new UUID(in.readLong(), in.readLong()));
+				}
+				payload = new ProxyLostPayload(proxy, timestamp, players);
+				break;
+			default:
+				throw new AssertionError(action);
+		}
+
+		DataManagerMessage<Object> message = new DataManagerMessage<>(target, source, action, payload);
+		message.setEpoch(epoch);
+		message.setSequence(sequence);
+		return message;
+	}
+
+	private int serverId(String server) {
+		return server != null ? serverNameRegistry.getId(server) : NO_SERVER;
+	}
+
+	private String serverName(int id) {
+		return id != NO_SERVER ? serverNameRegistry.getName(id) : null;
+	}
+
+	private static Type payloadType(DataManagerMessage.Action action) {
+		switch (action) {
+			case JOIN:
+				return LoginPayload.class;
+			case LEAVE:
+				return LogoutPayload.class;
+			case SERVER_CHANGE:
+				return ServerChangePayload.class;
+			case PROXY_LOST:
+				return ProxyLostPayload.class;
+			default:
+				throw new AssertionError(action);
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package com.imaginarycode.minecraft.redisbungee.pubsub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+
+import de.pesacraft.bungee.core.server.ServerInformation;
+import de.pesacraft.shares.config.CustomRedisTemplate;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publishes messages on the data channels.
+ * <p>
+ * Every message is stamped with this proxy's epoch and a strictly increasing sequence number, which
+ * lets receivers detect messages that were dropped on the way.
+ * <p>
+ * Messages are sent in the binary format on {@link #BINARY_DATA_CHANNEL} once every live proxy has announced
+ * support for it in the {@code data-codecs} hash, and as JSON on {@link #DATA_CHANNEL} otherwise, so proxies
+ * running older versions keep receiving them during a rolling upgrade.
+ * <p>
+ * Binary messages published through {@link #publish(DataManagerMessage)} are held back for
+ * {@code redisbungee.publishBatchMillis} and sent as one frame together with the messages published in the
+ * meantime, which keeps the number of PUBLISH commands down during login storms.
+ * <p>
+ * One message at a time is followed until it comes back through this proxy's subscriber, which gives the
+ * publish-to-receive lag in the {@code pubsub.lag} histogram without comparing clocks of different proxies.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class DataMessagePublisher implements InitializingBean, DisposableBean {
+
+	public static final String DATA_CHANNEL = "redisbungee-data";
+	public static final String BINARY_DATA_CHANNEL = "redisbungee-data-binary";
+	public static final String CODECS_KEY = "data-codecs";
+
+	private static final byte[] RAW_DATA_CHANNEL = DATA_CHANNEL.getBytes(StandardCharsets.UTF_8);
+	private static final byte[] RAW_BINARY_DATA_CHANNEL = BINARY_DATA_CHANNEL.getBytes(StandardCharsets.UTF_8);
+	private static final int MAX_BATCH_SIZE = 256;
+	private static final long LAG_SAMPLE_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private CustomRedisTemplate redisTemplate;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private HashOperations<String, String, String> hashOperations;
+
+	@Autowired
+	private ServerInformation serverInformation;
+
+	@Autowired
+	private ServerManager serverManager;
+
+	@Autowired
+	private DataMessageCodec codec;
+
+	private final long epoch = System.currentTimeMillis();
+	private long sequence;
+	private long lagSampleSequence; // Guarded by this.
+	private long lagSampleStart;
+	private volatile boolean binary;
+	private volatile boolean proxyLost;
+
+	private Runnable flushTask;
+	private final Object batchLock = new Object();
+	private List<DataManagerMessage<?>> batch = new ArrayList<>(); // Guarded by batchLock.
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		hashOperations.put(CODECS_KEY, serverInformation.getServerName(), String.valueOf(DataMessageCodec.PROXY_LOST_VERSION));
+		flushTask = metrics.attributed("publisher", this::flush);
+		plugin.getProxy().getScheduler().schedule(plugin, metrics.attributed("publisher", this::negotiate), 0, 10, TimeUnit.SECONDS);
+		metrics.registerGauge("publisher.pending", () -> {
+			synchronized (batchLock) {
+				return batch.size();
+			}
+		});
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		flush();
+	}
+
+	/**
+	 * Publishes the message, as part of the next batch if batching is enabled.
+	 */
+	public void publish(DataManagerMessage<?> message) {
+		if (!isBatching()) {
+			send(prepare(message));
+			return;
+		}
+
+		boolean first = false;
+		List<DataManagerMessage<?>> full = null;
+		synchronized (batchLock) {
+			// Stamped under the lock, so every batch is in sequence order.
+			stamp(message);
+			batch.add(message);
+			if (batch.size() == 1) {
+				first = true;
+			} else if (batch.size() >= MAX_BATCH_SIZE) {
+				full = batch;
+				batch = new ArrayList<>();
+			}
+		}
+
+		if (full != null)
+			send(full);
+		else if (first)
+			plugin.getProxy().getScheduler().schedule(plugin, flushTask, configuration.getPublishBatchMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stamps the message and serializes it the way {@link #publish(DataManagerMessage)} would send it on its
+	 * own, for scripts that publish the message themselves.
+	 */
+	public PreparedMessage prepare(DataManagerMessage<?> message) {
+		stamp(message);
+		return encode(message);
+	}
+
+	public boolean isBinary() {
+		return binary;
+	}
+
+	/**
+	 * Whether all proxies understand PROXY_LOST messages. Until they do, the players of a lost proxy have to be
+	 * announced with a LEAVE message each.
+	 */
+	public boolean isProxyLostSupported() {
+		return proxyLost;
+	}
+
+	/**
+	 * Whether {@link #publish(DataManagerMessage)} holds messages back. Proxies that do not understand binary
+	 * frames cannot unpack batches either, so JSON messages are always sent on their own.
+	 */
+	public boolean isBatching() {
+		return binary && configuration.getPublishBatchMillis() > 0;
+	}
+
+	private void flush() {
+		List<DataManagerMessage<?>> messages;
+		synchronized (batchLock) {
+			if (batch.isEmpty())
+				return;
+			messages = batch;
+			batch = new ArrayList<>();
+		}
+		send(messages);
+	}
+
+	private void send(List<DataManagerMessage<?>> messages) {
+		try {
+			if (binary) {
+				send(new PreparedMessage(RAW_BINARY_DATA_CHANNEL, codec.encode(messages)));
+				metrics.increment("publisher.batches");
+				metrics.increment("publisher.batchedMessages", messages.size());
+			} else {
+				// A proxy without batch support joined since the messages were queued.
+				for (DataManagerMessage<?> message : messages) {
+					send(encode(message));
+				}
+			}
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.SEVERE, "Unable to publish " + messages.size() + " data messages", e);
+		}
+	}
+
+	private void send(final PreparedMessage prepared) {
+		redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(prepared.getChannel(), prepared.getBody()));
+		metrics.increment("publisher.publishes");
+	}
+
+	private PreparedMessage encode(DataManagerMessage<?> message) {
+		if (binary)
+			return new PreparedMessage(RAW_BINARY_DATA_CHANNEL, codec.encode(message));
+
+		// The JSON channel goes through the message listener adapter, which expects the template's serialization.
+		@SuppressWarnings("unchecked")
+		RedisSerializer<Object> serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+		return new PreparedMessage(RAW_DATA_CHANNEL, serializer.serialize(codec.encodeJson(message)));
+	}
+
+	private synchronized void stamp(DataManagerMessage<?> message) {
+		message.setEpoch(epoch);
+		message.setSequence(++sequence);
+
+		// Give up on a sample that never came back, it may have been lost with a connection.
+		long now = System.nanoTime();
+		if (lagSampleSequence == 0 || now - lagSampleStart > LAG_SAMPLE_TIMEOUT) {
+			lagSampleSequence = sequence;
+			lagSampleStart = now;
+		}
+	}
+
+	/**
+	 * Called for every message published by this proxy once it has been received back from Redis.
+	 */
+	public void received(DataManagerMessage<?> message) {
+		long lag;
+		synchronized (this) {
+			if (message.getEpoch() != epoch || message.getSequence() != lagSampleSequence)
+				return;
+			lag = System.nanoTime() - lagSampleStart;
+			lagSampleSequence = 0;
+		}
+		metrics.recordLatency("pubsub.lag", lag);
+	}
+
+	private void negotiate() {
+		try {
+			Map<String, String> codecs = hashOperations.entries(CODECS_KEY);
+
+			int lowest = DataMessageCodec.PROXY_LOST_VERSION;
+			for (String proxy : serverManager.getServerIds()) {
+				String version = codecs.get(proxy);
+				try {
+					lowest = version == null ? 0 : Math.min(lowest, Integer.parseInt(version));
+				} catch (NumberFormatException e) {
+					lowest = 0;
+				}
+				if (lowest == 0)
+					break;
+			}
+
+			boolean supported = lowest >= DataMessageCodec.BINARY_VERSION;
+
+			if (supported != binary)
+				plugin.getLogger().info("All proxies " + (supported ? "support" : "no longer support")
+						+ " binary data messages, publishing " + (supported ? "binary" : "JSON") + " messages.");
+			binary = supported;
+			proxyLost = lowest >= DataMessageCodec.PROXY_LOST_VERSION;
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.SEVERE, "Unable to negotiate the data message format", e);
+		}
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public static class PreparedMessage {
+		private final byte[] channel;
+		private final byte[] body;
+	}
+}
@@ -0,0 +1,61 @@
+package com.imaginarycode.minecraft.redisbungee.pubsub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+
+/**
+ * Keeps {@link ServerManager#getServerIds()} up to date with liveness keys: proxies are added when they announce
+ * joining, and removed when they announce leaving or their {@code heartbeat:<id>} key expires.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class MembershipReceiver implements MessageListener {
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired
+	private ServerManager serverManager;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		if (!configuration.isLivenessKeys())
+			return;
+
+		String body = new String(message.getBody(), StandardCharsets.UTF_8);
+		if (pattern != null) {
+			// An expired key, which may be anything.
+			String prefix = redisKeys.livenessPrefix();
+			if (body.startsWith(prefix))
+				serverManager.proxyLeft(body.substring(prefix.length()));
+		} else if (body.startsWith(ServerManager.JOIN)) {
+			serverManager.proxyJoined(body.substring(ServerManager.JOIN.length()));
+		} else if (body.startsWith(ServerManager.LEAVE)) {
+			serverManager.proxyLeft(body.substring(ServerManager.LEAVE.length()));
+		}
+	}
+
+	/**
+	 * @return the membership channel, and the expiry events of keys
+	 */
+	public List<Topic> getTopics() {
+		return Arrays.asList(new ChannelTopic(ServerManager.MEMBERSHIP_CHANNEL), new PatternTopic("__keyevent@*__:expired"));
+	}
+}
@@ -0,0 +1,111 @@
+package com.imaginarycode.minecraft.redisbungee.pubsub;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+
+/**
+ * Hands incoming pub/sub messages to a fixed number of lanes, each a single thread with a bounded queue.
+ * <p>
+ * Messages with the same key always end up on the same lane and are handled in the order they were
+ * dispatched, so a player's JOIN is never handled after their LEAVE. When a lane is full the subscriber
+ * waits for it instead of queueing without limit.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class MessageDispatcher implements InitializingBean, DisposableBean {
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	private ThreadPoolExecutor[] lanes;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		ThreadFactory threadFactory = new ThreadFactoryBuilder()
+				.setNameFormat("RedisBungee Dispatcher #%d")
+				.setDaemon(true)
+				.build();
+
+		lanes = new ThreadPoolExecutor[Math.max(1, configuration.getDispatcherThreads())];
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(Math.max(1, configuration.getDispatcherQueueSize())),
+					threadFactory, this::waitForLane);
+		}
+		metrics.registerGauge("dispatcher.queueDepth", this::getQueueDepth);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		for (ThreadPoolExecutor lane : lanes) {
+			lane.shutdown();
+		}
+		for (ThreadPoolExecutor lane : lanes) {
+			if (!lane.awaitTermination(5, TimeUnit.SECONDS))
+				plugin.getLogger().warning("Dropped " + lane.shutdownNow().size() + " pub/sub messages on shutdown.");
+		}
+	}
+
+	/**
+	 * Runs the task on the lane of {@code key}, after all tasks dispatched with the same key before.
+	 */
+	public void dispatch(Object key, final Runnable task) {
+		metrics.increment("dispatcher.dispatched");
+		lanes[Math.floorMod(key.hashCode(), lanes.length)].execute(() -> {
+			try {
+				task.run();
+			} catch (Exception e) {
+				metrics.increment("dispatcher.failed");
+				plugin.getLogger().log(Level.WARNING, "Unable to handle pub/sub message", e);
+			}
+		});
+	}
+
+	/**
+	 * @return the number of messages waiting to be handled
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (ThreadPoolExecutor lane : lanes) {
+			depth += lane.getQueue().size();
+		}
+		return depth;
+	}
+
+	private void waitForLane(Runnable task, ThreadPoolExecutor lane) {
+		if (lane.isShutdown())
+			throw new RejectedExecutionException("The dispatcher has been shut down");
+
+		metrics.increment("dispatcher.backpressure");
+		long start = System.nanoTime();
+		try {
+			lane.getQueue().put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException(e);
+		} finally {
+			metrics.increment("dispatcher.backpressureMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+	}
+}
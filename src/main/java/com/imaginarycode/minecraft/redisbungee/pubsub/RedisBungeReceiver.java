@@ -1,10 +1,14 @@
 package com.imaginarycode.minecraft.redisbungee.pubsub;
 
+import java.util.logging.Level;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
 import com.imaginarycode.minecraft.redisbungee.events.PubSubMessageEvent;
+import com.imaginarycode.minecraft.redisbungee.listener.PubSubMessageListener;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
 
 import net.md_5.bungee.api.ProxyServer;
 
@@ -14,14 +18,38 @@ public class RedisBungeReceiver {
 	@Autowired
 	private RedisBungee plugin;
 
+	@Autowired
+	private MessageDispatcher dispatcher;
+
+	@Autowired
+	private DataMessageCodec codec;
+
+	@Autowired
+	private PubSubMessageListener pubSubMessageListener;
+
 	public void receiveMessage(String message, String channel) {
 		if (message.trim().length() == 0) return;
 
-		ProxyServer.getInstance().getScheduler().runAsync(plugin, new Runnable() {
-			@Override
-			public void run() {
-				ProxyServer.getInstance().getPluginManager().callEvent(new PubSubMessageEvent(channel, message));
-			}
-		});
+		if (!channel.equals(DataMessagePublisher.DATA_CHANNEL)) {
+			// Messages on the same channel are handled in order.
+			dispatcher.dispatch(channel, () -> callEvent(channel, message));
+			return;
+		}
+
+		final DataManagerMessage<?> dataMessage;
+		try {
+			dataMessage = codec.decodeJson(message);
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.WARNING, "Unable to decode data message", e);
+			return;
+		}
+
+		pubSubMessageListener.dispatchDataMessage(dataMessage);
+		// On the lane of the message, after it has been handled.
+		dispatcher.dispatch(dataMessage.getTarget(), () -> callEvent(channel, message));
+	}
+
+	private static void callEvent(String channel, String message) {
+		ProxyServer.getInstance().getPluginManager().callEvent(new PubSubMessageEvent(channel, message));
 	}
 }
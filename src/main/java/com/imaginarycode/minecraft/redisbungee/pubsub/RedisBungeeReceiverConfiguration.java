@@ -2,39 +2,19 @@ package com.imaginarycode.minecraft.redisbungee.pubsub;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.Topic;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 
-import de.pesacraft.bungee.core.server.ServerInformation;
 import de.pesacraft.shares.config.MessageListenerConfiguration;
 import lombok.RequiredArgsConstructor;
 
-@Configuration
-class AllRedisBungeeReceivers {
-
-	@Bean
-	RedisBungeeReceiverConfiguration redisBungeeSpecificChannelReceiver(@Autowired ServerInformation serverInformation) {
-		return new RedisBungeeReceiverConfiguration("redisbungee-" + serverInformation.getServerName());
-	}
-
-	@Bean
-	RedisBungeeReceiverConfiguration redisBungeeGeneralChannelAReceiver() {
-		return new RedisBungeeReceiverConfiguration("redisbungee-allservers");
-	}
-
-	@Bean
-	RedisBungeeReceiverConfiguration redisBungeeDataChannelAReceiver() {
-		return new RedisBungeeReceiverConfiguration("redisbungee-data");
-	}
-}
-
+/**
+ * Hands the JSON messages of a channel to {@link RedisBungeReceiver}. The channels of RedisBungee are received by
+ * {@link com.imaginarycode.minecraft.redisbungee.RedisBungeeCore#redisBungeeListenerContainer}.
+ */
 @Configurable
 @RequiredArgsConstructor
 public class RedisBungeeReceiverConfiguration implements MessageListenerConfiguration {
@@ -0,0 +1,89 @@
+package com.imaginarycode.minecraft.redisbungee.pubsub;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+
+/**
+ * Assigns network-wide numeric ids to server and proxy names, so the binary data channel does not have to
+ * repeat the names in every message.
+ * <p>
+ * Ids are allocated in Redis and never change once assigned.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class ServerNameRegistry implements InitializingBean {
+
+	private static final String NAMES_KEY = "server-name-ids";
+	private static final String IDS_KEY = "server-id-names";
+	private static final String SEQUENCE_KEY = "server-name-sequence";
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private HashOperations<String, String, String> hashOperations;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private ValueOperations<String, String> valueOperations;
+
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		for (Map.Entry<String, String> entry : hashOperations.entries(IDS_KEY).entrySet()) {
+			try {
+				register(Integer.parseInt(entry.getKey()), entry.getValue());
+			} catch (NumberFormatException ignored) {
+			}
+		}
+	}
+
+	public int getId(String name) {
+		Integer id = ids.get(name);
+		return id != null ? id : allocate(name);
+	}
+
+	public String getName(int id) {
+		String name = names.get(id);
+		if (name != null)
+			return name;
+
+		name = hashOperations.get(IDS_KEY, String.valueOf(id));
+		if (name == null)
+			throw new IllegalArgumentException("Unknown server name id " + id);
+
+		register(id, name);
+		return name;
+	}
+
+	/**
+	 * Makes an id known locally without asking Redis.
+	 */
+	public void register(int id, String name) {
+		ids.put(name, id);
+		names.put(id, name);
+	}
+
+	private synchronized int allocate(String name) {
+		String id = hashOperations.get(NAMES_KEY, name);
+
+		if (id == null) {
+			String candidate = String.valueOf(valueOperations.increment(SEQUENCE_KEY, 1));
+			// Write the reverse mapping first, so nobody can receive an id that cannot be resolved.
+			hashOperations.put(IDS_KEY, candidate, name);
+			id = hashOperations.putIfAbsent(NAMES_KEY, name, candidate) ? candidate : hashOperations.get(NAMES_KEY, name);
+		}
+
+		int parsed = Integer.parseInt(id);
+		register(parsed, name);
+		return parsed;
+	}
+}
@@ -1,107 +1,196 @@
 package com.imaginarycode.minecraft.redisbungee.repetitive;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-
-import javax.annotation.Resource;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.SetOperations;
 import org.springframework.stereotype.Component;
 
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
 import com.imaginarycode.minecraft.redisbungee.RedisUtil;
 import com.imaginarycode.minecraft.redisbungee.manager.PlayerManager;
 import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
 
 import de.pesacraft.bungee.core.server.ServerInformation;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Pipeline;
 
+/**
+ * Reconciles this proxy's set in Redis with the players actually connected, and cleans up after lagged proxies.
+ * Every proxy checks its own set, but only the proxy holding the {@link LeaderLease} cleans up after others.
+ * <p>
+ * Each run looks at no more than {@link RedisBungeeConfiguration#getIntegrityCheckBudget()} players on either side.
+ * The set is walked with a cursor that is kept between runs, and the connected players are checked in slices, so a
+ * large proxy is covered over several runs instead of in one burst. Whether players are in a set is decided by
+ * scripts in batches rather than one round trip per player and proxy, and so are the repairs.
+ * <p>
+ * The counters are recounted after a run that repaired something, and every {@value #RECOUNT_INTERVAL} runs to
+ * catch drift from writes this check cannot see.
+ */
 @Component
 public class IntegrityCheck implements Runnable, InitializingBean {
 
+	private static final int PAGE_SIZE = 500;
+	private static final int RECOUNT_INTERVAL = 10;
+
 	@Autowired
 	private RedisBungee plugin;
 
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
 	@Autowired
 	private PlayerManager playerManager;
 
 	@Autowired
 	private ServerManager serverManager;
 
-	@Resource(name = "redisTemplate")
-	private SetOperations<String, String> setOperations;
-
 	@Autowired
 	private ServerInformation serverInformation;
 
 	@Autowired
 	private RedisUtil redisUtil;
 
+	@Autowired
+	private UuidMemberCodec uuidMemberCodec;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private LeaderLease leaderLease;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	// Only used by the scheduled task, runs never overlap.
+	private long setCursor;
+	private int localOffset;
+	private int runsSinceRecount;
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
-		plugin.getProxy().getScheduler().schedule(plugin, this, 0, 1, TimeUnit.MINUTES);
+		plugin.getProxy().getScheduler().schedule(plugin, metrics.attributed("integrityCheck", this), 0, 1, TimeUnit.MINUTES);
 	}
 
 	@Override
 	public void run() {
-		Set<String> players = playerManager.getLocalPlayersAsUuidStrings();
-		Set<String> playersInRedis = setOperations.members("proxy:" + serverInformation.getServerName() + ":usersOnline");
-		List<String> lagged = serverManager.getCurrentServerIds(false, true);
-
+		boolean repaired = false;
 		// Clean up lagged players.
-		for (String s : lagged) {
-			Set<String> laggedPlayers = setOperations.members("proxy:" + s + ":usersOnline");
-			setOperations.getOperations().delete("proxy:" + s + ":usersOnline");
-			if (!laggedPlayers.isEmpty()) {
-				plugin.getLogger().info("Cleaning up lagged proxy " + s + " (" + laggedPlayers.size() + " players)...");
-				for (String laggedPlayer : laggedPlayers) {
-					redisUtil.cleanUpPlayer(laggedPlayer);
+		if (leaderLease.acquire()) {
+			for (String s : serverManager.getLaggedServerIds()) {
+				int cleaned = redisUtil.cleanUpProxy(s);
+				if (cleaned > 0) {
+					plugin.getLogger().info("Cleaned up lagged proxy " + s + " (" + cleaned + " players).");
+					repaired = true;
 				}
 			}
 		}
 
-		Set<String> absentLocally = new HashSet<>(playersInRedis);
-		absentLocally.removeAll(players);
-		Set<String> absentInRedis = new HashSet<>(players);
-		absentInRedis.removeAll(playersInRedis);
-
-		for (String member : absentLocally) {
-			boolean found = false;
-			for (String proxyId : serverManager.getServerIds()) {
-				if (proxyId.equals(serverInformation.getServerName())) continue;
-				if (setOperations.isMember("proxy:" + proxyId + ":usersOnline", member)) {
-					// Just clean up the set.
-					found = true;
-					break;
-				}
+		String key = redisKeys.proxyPlayers(serverInformation.getServerName());
+		CompactUuidSet players = playerManager.getLocalPlayers();
+		repaired |= checkAbsentLocally(key, players);
+		repaired |= checkAbsentInRedis(key, players);
+
+		// Correct the counters for anything the fixes above, or writes outside the transition scripts, got wrong.
+		if (repaired || ++runsSinceRecount >= RECOUNT_INTERVAL) {
+			redisUtil.recountPlayers(ProxyServer.getInstance().getServers().keySet());
+			runsSinceRecount = 0;
+		}
+	}
+
+	/**
+	 * Scans on through this proxy's set for players who are not connected to this proxy.
+	 *
+	 * @return whether any were found
+	 */
+	private boolean checkAbsentLocally(String key, CompactUuidSet players) {
+		CompactUuidSet.Builder scanned = new CompactUuidSet.Builder(PAGE_SIZE);
+		int remaining = configuration.getIntegrityCheckBudget();
+		do {
+			UuidMemberCodec.ScanPage page = uuidMemberCodec.scan(key, setCursor, Math.min(remaining, PAGE_SIZE));
+			for (UUID player : page.getPlayers()) {
+				scanned.add(player);
 			}
-			if (!found) {
-				redisUtil.cleanUpPlayer(member);
-				plugin.getLogger().warning("Player found in set that was not found locally and globally: " + member);
-			} else {
-				setOperations.remove("proxy:" + serverInformation.getServerName() + ":usersOnline", member);
+			remaining -= page.getPlayers().size();
+			setCursor = page.getCursor();
+		} while (remaining > 0 && setCursor != 0);
+
+		List<UUID> absentLocally = new ArrayList<>();
+		for (UUID player : scanned.build().difference(players)) {
+			// They may have joined since the players were listed.
+			if (ProxyServer.getInstance().getPlayer(player) == null)
+				absentLocally.add(player);
+		}
+		if (absentLocally.isEmpty())
+			return false;
+
+		List<String> otherProxies = new ArrayList<>();
+		for (String proxyId : serverManager.getServerIds()) {
+			if (!proxyId.equals(serverInformation.getServerName()))
+				otherProxies.add(redisKeys.proxyPlayers(proxyId));
+		}
+		CompactUuidSet elsewhere = uuidMemberCodec.find(otherProxies, absentLocally);
+
+		List<UUID> absentGlobally = new ArrayList<>();
+		for (UUID member : absentLocally) {
+			if (elsewhere.contains(member)) {
 				plugin.getLogger().warning("Player found in set that was not found locally, but is on another proxy: " + member);
+			} else {
+				absentGlobally.add(member);
+				plugin.getLogger().warning("Player found in set that was not found locally and globally: " + member);
 			}
 		}
+		redisUtil.cleanUpPlayers(absentGlobally);
+		// Just clean up the set.
+		uuidMemberCodec.remove(key, elsewhere);
+		metrics.increment("integrityCheck.absentLocally", absentLocally.size());
+		return true;
+	}
+
+	/**
+	 * Checks the next slice of the players connected to this proxy for players missing from this proxy's set. This also
+	 * completes logins that only got as far as the player hash in cluster mode, see {@link RedisUtil#loginPlayer}.
+	 *
+	 * @return whether any were found
+	 */
+	private boolean checkAbsentInRedis(String key, CompactUuidSet players) {
+		List<UUID> slice = new ArrayList<>(players);
+		if (localOffset >= slice.size())
+			localOffset = 0;
+		int end = Math.min(localOffset + configuration.getIntegrityCheckBudget(), slice.size());
+		slice = slice.subList(localOffset, end);
+		localOffset = end;
+
+		CompactUuidSet inRedis = uuidMemberCodec.find(Collections.singletonList(key), slice);
+		List<ProxiedPlayer> absentInRedis = new ArrayList<>();
+		for (UUID player : slice) {
+			if (inRedis.contains(player))
+				continue;
 
-		for (String player : absentLocally) {
 			// Player not online according to Redis but not BungeeCord.
 			plugin.getLogger().warning("Player " + player + " is on the proxy but not in Redis.");
 
-			ProxiedPlayer proxiedPlayer = ProxyServer.getInstance().getPlayer(UUID.fromString(player));
+			ProxiedPlayer proxiedPlayer = ProxyServer.getInstance().getPlayer(player);
 			if (proxiedPlayer == null)
 				continue; // We'll deal with it later.
 
-			redisUtil.createPlayer(proxiedPlayer, true);
+			absentInRedis.add(proxiedPlayer);
 		}
+		if (absentInRedis.isEmpty())
+			return false;
+
+		redisUtil.createPlayers(absentInRedis);
+		metrics.increment("integrityCheck.absentInRedis", absentInRedis.size());
+		return true;
 	}
 }
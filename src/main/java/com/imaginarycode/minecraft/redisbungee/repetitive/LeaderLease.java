@@ -0,0 +1,87 @@
+package com.imaginarycode.minecraft.redisbungee.repetitive;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import com.imaginarycode.minecraft.redisbungee.util.ScriptRegistry;
+
+import de.pesacraft.bungee.core.server.ServerInformation;
+
+import static com.imaginarycode.minecraft.redisbungee.util.RedisBytes.raw;
+
+/**
+ * Elects the one proxy that cleans up after lagged proxies. The proxy holding the {@code integrity-leader} key leads; it renews
+ * the key on each integrity check, and once it stops doing so the key expires and the next proxy to check takes over.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class LeaderLease {
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private ScriptRegistry scriptRegistry;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired
+	private ServerInformation serverInformation;
+
+	@Autowired
+	private RedisScript<Long> acquireLeaseScript;
+
+	@Autowired
+	private RedisScript<Long> releaseLeaseScript;
+
+	private volatile boolean held;
+
+	/**
+	 * Takes the lease if it is free, or renews it if this proxy holds it already.
+	 *
+	 * @return true if this proxy leads until the next renewal
+	 */
+	public boolean acquire() {
+		long leaseMillis = TimeUnit.SECONDS.toMillis(configuration.getIntegrityLeaseSeconds());
+		Long result = scriptRegistry.execute(acquireLeaseScript, keys(),
+				new Object[]{raw(serverInformation.getServerName()), raw(String.valueOf(leaseMillis))});
+
+		boolean acquired = result != null && result == 1;
+		if (acquired != held)
+			plugin.getLogger().info(acquired ? "This proxy now cleans up after lagged proxies." : "Another proxy now cleans up after lagged proxies.");
+		held = acquired;
+		return acquired;
+	}
+
+	/**
+	 * Gives the lease up, so another proxy can take over without waiting for it to expire.
+	 */
+	public void release() {
+		if (!held)
+			return;
+
+		held = false;
+		scriptRegistry.execute(releaseLeaseScript, keys(), new Object[]{raw(serverInformation.getServerName())});
+	}
+
+	public boolean isHeld() {
+		return held;
+	}
+
+	private List<String> keys() {
+		return Collections.singletonList(redisKeys.integrityLeader());
+	}
+}
@@ -0,0 +1,314 @@
+package com.imaginarycode.minecraft.redisbungee.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * An immutable set of UUIDs stored as sorted pairs of longs, 16 bytes per UUID. Lookups are binary searches, and
+ * UUID objects are only created while iterating.
+ * <p>
+ * Sets of player UUIDs can be large, a {@link java.util.HashSet} or {@link com.google.common.collect.ImmutableSet}
+ * of them needs several times the memory and an object per player.
+ *
+ * @since 0.3.10
+ */
+public final class CompactUuidSet extends AbstractSet<UUID> {
+
+	private static final CompactUuidSet EMPTY = new CompactUuidSet(new long[0]);
+	private static final int INSERTION_SORT_THRESHOLD = 32;
+	private static final byte[] HEX_DIGITS = new byte['f' + 1];
+
+	static {
+		Arrays.fill(HEX_DIGITS, (byte) -1);
+		for (int digit = 0; digit < 16; digit++) {
+			HEX_DIGITS[Character.forDigit(digit, 16)] = (byte) digit;
+			HEX_DIGITS[Character.toUpperCase(Character.forDigit(digit, 16))] = (byte) digit;
+		}
+	}
+
+	// The most and least significant bits of each UUID, in ascending unsigned order.
+	private final long[] bits;
+
+	private CompactUuidSet(long[] bits) {
+		this.bits = bits;
+	}
+
+	public static CompactUuidSet of() {
+		return EMPTY;
+	}
+
+	public static CompactUuidSet copyOf(Collection<UUID> uuids) {
+		if (uuids instanceof CompactUuidSet)
+			return (CompactUuidSet) uuids;
+
+		Builder builder = new Builder(uuids.size());
+		for (UUID uuid : uuids) {
+			builder.add(uuid);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Parses a set of UUIDs as stored in Redis, skipping anything that is not a UUID.
+	 */
+	public static CompactUuidSet fromStrings(Collection<String> uuids) {
+		Builder builder = new Builder(uuids.size());
+		for (String uuid : uuids) {
+			builder.add(uuid);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Collects UUIDs, in any order and with duplicates, into a set.
+	 */
+	public static final class Builder {
+		private long[] bits;
+		private int length;
+
+		public Builder(int expectedSize) {
+			bits = new long[Math.max(expectedSize, 1) * 2];
+		}
+
+		public Builder add(long most, long least) {
+			if (length == bits.length)
+				bits = Arrays.copyOf(bits, length * 2);
+			bits[length++] = most;
+			bits[length++] = least;
+			return this;
+		}
+
+		public Builder add(UUID uuid) {
+			return add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		}
+
+		/**
+		 * Adds a textual UUID, skipping it if it is not one.
+		 */
+		public Builder add(String uuid) {
+			if (length == bits.length)
+				bits = Arrays.copyOf(bits, length * 2);
+			if (parse(uuid, bits, length))
+				length += 2;
+			return this;
+		}
+
+		public CompactUuidSet build() {
+			CompactUuidSet set = CompactUuidSet.build(bits, length);
+			// The set may own the array now.
+			bits = new long[2];
+			length = 0;
+			return set;
+		}
+	}
+
+	private static CompactUuidSet build(long[] bits, int length) {
+		if (length == 0)
+			return EMPTY;
+
+		sort(bits, length / 2);
+
+		// Drop duplicates.
+		int unique = 2;
+		for (int i = 2; i < length; i += 2) {
+			if (bits[i] != bits[unique - 2] || bits[i + 1] != bits[unique - 1]) {
+				bits[unique++] = bits[i];
+				bits[unique++] = bits[i + 1];
+			}
+		}
+		return new CompactUuidSet(unique == bits.length ? bits : Arrays.copyOf(bits, unique));
+	}
+
+	@Override
+	public int size() {
+		return bits.length / 2;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof UUID))
+			return false;
+
+		UUID uuid = (UUID) o;
+		return indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) >= 0;
+	}
+
+	/**
+	 * @return the UUIDs in this set that are not in {@code other}
+	 */
+	public CompactUuidSet difference(CompactUuidSet other) {
+		long[] result = new long[bits.length];
+		int length = 0;
+		for (int i = 0, j = 0; i < bits.length; i += 2) {
+			while (j < other.bits.length && compare(other.bits, j, bits[i], bits[i + 1]) < 0) {
+				j += 2;
+			}
+			if (j < other.bits.length && compare(other.bits, j, bits[i], bits[i + 1]) == 0)
+				continue;
+
+			result[length++] = bits[i];
+			result[length++] = bits[i + 1];
+		}
+		if (length == bits.length)
+			return this;
+		return length == 0 ? EMPTY : new CompactUuidSet(Arrays.copyOf(result, length));
+	}
+
+	@Override
+	public Iterator<UUID> iterator() {
+		return new Iterator<UUID>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < bits.length;
+			}
+
+			@Override
+			public UUID next() {
+				if (next >= bits.length)
+					throw new NoSuchElementException();
+				UUID uuid = new UUID(bits[next], bits[next + 1]);
+				next += 2;
+				return uuid;
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof CompactUuidSet)
+			return Arrays.equals(bits, ((CompactUuidSet) o).bits);
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		// The sum of UUID#hashCode() over all elements, as the Set contract requires.
+		int hashCode = 0;
+		for (int i = 0; i < bits.length; i += 2) {
+			long hilo = bits[i] ^ bits[i + 1];
+			hashCode += ((int) (hilo >> 32)) ^ (int) hilo;
+		}
+		return hashCode;
+	}
+
+	private int indexOf(long most, long least) {
+		int low = 0;
+		int high = bits.length / 2 - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int comparison = compare(bits, mid * 2, most, least);
+			if (comparison < 0)
+				low = mid + 1;
+			else if (comparison > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	private static int compare(long[] bits, int i, long most, long least) {
+		int comparison = Long.compareUnsigned(bits[i], most);
+		return comparison != 0 ? comparison : Long.compareUnsigned(bits[i + 1], least);
+	}
+
+	/**
+	 * Sorts the first {@code count} pairs with a most significant digit radix sort. Player UUIDs are random, so one
+	 * or two passes leave buckets small enough for an insertion sort.
+	 */
+	private static void sort(long[] bits, int count) {
+		sort(bits, new long[count * 2], 0, count, 56);
+	}
+
+	private static void sort(long[] bits, long[] buffer, int from, int to, int shift) {
+		if (to - from <= INSERTION_SORT_THRESHOLD || shift < 0) {
+			insertionSort(bits, from, to);
+			return;
+		}
+
+		int[] offsets = new int[257];
+		for (int i = from; i < to; i++) {
+			offsets[(int) (bits[i * 2] >>> shift & 0xFF) + 1]++;
+		}
+		for (int b = 0; b < 256; b++) {
+			offsets[b + 1] += offsets[b];
+		}
+		for (int i = from; i < to; i++) {
+			int target = (from + offsets[(int) (bits[i * 2] >>> shift & 0xFF)]++) * 2;
+			buffer[target] = bits[i * 2];
+			buffer[target + 1] = bits[i * 2 + 1];
+		}
+		System.arraycopy(buffer, from * 2, bits, from * 2, (to - from) * 2);
+
+		// Each offset has moved on to the end of its bucket.
+		for (int b = 0, start = 0; b < 256; start = offsets[b++]) {
+			if (offsets[b] - start > 1)
+				sort(bits, buffer, from + start, from + offsets[b], shift - 8);
+		}
+	}
+
+	private static void insertionSort(long[] bits, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			long most = bits[i * 2];
+			long least = bits[i * 2 + 1];
+			int j = i;
+			for (; j > from && compare(bits, j * 2 - 2, most, least) > 0; j--) {
+				bits[j * 2] = bits[j * 2 - 2];
+				bits[j * 2 + 1] = bits[j * 2 - 1];
+			}
+			bits[j * 2] = most;
+			bits[j * 2 + 1] = least;
+		}
+	}
+
+	/**
+	 * Parses a UUID into {@code bits[i]} and {@code bits[i + 1]} without creating a UUID object.
+	 *
+	 * @return false if the string is not a UUID
+	 */
+	private static boolean parse(String uuid, long[] bits, int i) {
+		if (uuid.length() != 36 || uuid.charAt(8) != '-' || uuid.charAt(13) != '-' || uuid.charAt(18) != '-' || uuid.charAt(23) != '-') {
+			// Not in the canonical form, let UUID decide.
+			try {
+				UUID parsed = UUID.fromString(uuid);
+				bits[i] = parsed.getMostSignificantBits();
+				bits[i + 1] = parsed.getLeastSignificantBits();
+				return true;
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+
+		long group1 = hex(uuid, 0, 8);
+		long group2 = hex(uuid, 9, 13);
+		long group3 = hex(uuid, 14, 18);
+		long group4 = hex(uuid, 19, 23);
+		long group5 = hex(uuid, 24, 36);
+		if ((group1 | group2 | group3 | group4 | group5) < 0)
+			return false;
+		bits[i] = group1 << 32 | group2 << 16 | group3;
+		bits[i + 1] = group4 << 48 | group5;
+		return true;
+	}
+
+	/**
+	 * @return the value of the hex digits from {@code start} to {@code end}, or -1 if there is anything else
+	 */
+	private static long hex(String s, int start, int end) {
+		long value = 0;
+		for (int c = start; c < end; c++) {
+			char ch = s.charAt(c);
+			int digit = ch < HEX_DIGITS.length ? HEX_DIGITS[ch] : -1;
+			if (digit < 0)
+				return -1;
+			value = value << 4 | digit;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,199 @@
+package com.imaginarycode.minecraft.redisbungee.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import com.google.common.net.HostAndPort;
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+
+import de.pesacraft.bungee.core.server.ServerInformation;
+import de.pesacraft.shares.config.CustomRedisTemplate;
+
+/**
+ * Picks the node a lookup is read from: one of the {@link RedisBungeeConfiguration#getReadReplicas()} if the lookup
+ * tolerates slightly stale data, and the primary otherwise.
+ * <p>
+ * Every 3 seconds the heartbeat of this proxy is read from each replica and compared with the time of the primary. A
+ * replica holds everything up to its copy of the heartbeat, so the age of that copy is how far behind it may be, and
+ * the replica is used only while that is no more than {@link RedisBungeeConfiguration#getReplicaMaxStalenessMillis()}.
+ * Replicas take turns; if none is fresh enough, none is configured, or the primary cannot be reached to compare with,
+ * reads go to the primary. Each read is counted in a
+ * {@code reads.<call>.<node>} counter, the node being {@code primary} or {@code replica<index>}.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class ReadRouter implements InitializingBean, DisposableBean {
+
+	private static final String PRIMARY = "primary";
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private CustomRedisTemplate redisTemplate;
+
+	// Replicas are connected to the way the core plugin connects to the primary.
+	@Autowired
+	private CustomRedisTemplate coreTemplate;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private ServerInformation serverInformation;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	private final List<Replica> replicas = new ArrayList<>();
+	private final AtomicInteger next = new AtomicInteger();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		List<String> addresses = configuration.getReadReplicas();
+		if (addresses.isEmpty())
+			return;
+		if (redisKeys.isCluster()) {
+			plugin.getLogger().warning("Read replicas are not supported in cluster mode, all reads go to the primary.");
+			return;
+		}
+
+		for (int i = 0; i < addresses.size(); i++) {
+			final Replica replica = new Replica("replica" + i, addresses.get(i), connectionFactory(addresses.get(i)));
+			replicas.add(replica);
+			metrics.registerGauge("replicas." + replica.name + ".stalenessMillis", () -> replica.stalenessMillis);
+			plugin.getLogger().info("Reading lookups from " + replica.address + " as " + replica.name + ".");
+		}
+		plugin.getProxy().getScheduler().schedule(plugin, metrics.attributed("replicaCheck", this::checkReplicas), 0, 3, TimeUnit.SECONDS);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		for (Replica replica : replicas) {
+			if (replica.connectionFactory instanceof DisposableBean)
+				((DisposableBean) replica.connectionFactory).destroy();
+		}
+	}
+
+	/**
+	 * @param call what the read is for, to count it by
+	 * @return the template of a replica that is fresh enough, or the primary's
+	 */
+	public CustomRedisTemplate forRead(String call) {
+		int size = replicas.size();
+		int start = size > 0 ? Math.floorMod(next.getAndIncrement(), size) : 0;
+		for (int i = 0; i < size; i++) {
+			Replica replica = replicas.get((start + i) % size);
+			if (replica.fresh) {
+				metrics.increment("reads." + call + "." + replica.name);
+				return replica.template;
+			}
+		}
+		metrics.increment("reads." + call + "." + PRIMARY);
+		return redisTemplate;
+	}
+
+	/**
+	 * Measures the age of the heartbeat of this proxy on each replica by the clock of the primary. The heartbeat is
+	 * only written every 3 seconds, so the age is up to 3 seconds more than the replication lag, but never less.
+	 */
+	private void checkReplicas() {
+		String key = redisKeys.heartbeats();
+		String proxy = serverInformation.getServerName();
+		long now;
+		try {
+			// Heartbeats hold the Redis time in milliseconds.
+			now = redisTemplate.execute(RedisConnection::time);
+		} catch (Exception e) {
+			for (Replica replica : replicas) {
+				if (replica.fresh)
+					plugin.getLogger().log(Level.WARNING, "Unable to reach the primary to compare replica " + replica.address + " with, not reading from it", e);
+				replica.stalenessMillis = -1;
+				replica.fresh = false;
+			}
+			return;
+		}
+
+		for (Replica replica : replicas) {
+			long staleness;
+			try {
+				Long stamp = parse(replica.template.<String, String>opsForHash().get(key, proxy));
+				staleness = stamp == null ? Long.MAX_VALUE : Math.max(0, now - stamp);
+			} catch (Exception e) {
+				if (replica.fresh)
+					plugin.getLogger().log(Level.WARNING, "Unable to reach replica " + replica.address + ", reading from the primary", e);
+				staleness = Long.MAX_VALUE;
+			}
+
+			boolean fresh = staleness <= configuration.getReplicaMaxStalenessMillis();
+			if (fresh != replica.fresh)
+				plugin.getLogger().info("Replica " + replica.address + (fresh ? " caught up, reading from it again." : " fell behind, not reading from it."));
+			replica.stalenessMillis = staleness == Long.MAX_VALUE ? -1 : staleness;
+			replica.fresh = fresh;
+		}
+	}
+
+	/**
+	 * Connects to a replica the way the primary is connected to.
+	 */
+	private JedisConnectionFactory connectionFactory(String address) {
+		HostAndPort hostAndPort = HostAndPort.fromString(address).withDefaultPort(6379);
+		JedisConnectionFactory factory = new JedisConnectionFactory();
+		factory.setHostName(hostAndPort.getHostText());
+		factory.setPort(hostAndPort.getPort());
+
+		RedisConnectionFactory primary = coreTemplate.getConnectionFactory();
+		if (primary instanceof JedisConnectionFactory) {
+			factory.setPassword(((JedisConnectionFactory) primary).getPassword());
+			factory.setDatabase(((JedisConnectionFactory) primary).getDatabase());
+			factory.setTimeout(((JedisConnectionFactory) primary).getTimeout());
+		}
+		factory.afterPropertiesSet();
+		return factory;
+	}
+
+	private static Long parse(String stamp) {
+		try {
+			return stamp == null ? null : Long.valueOf(stamp);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private class Replica {
+		private final String name;
+		private final String address;
+		private final RedisConnectionFactory connectionFactory;
+		private final CustomRedisTemplate template;
+		// Until the first check, the replica is not read from.
+		private volatile boolean fresh;
+		private volatile long stalenessMillis = -1;
+
+		Replica(String name, String address, RedisConnectionFactory connectionFactory) {
+			this.name = name;
+			this.address = address;
+			this.connectionFactory = connectionFactory;
+			this.template = metrics.instrument(redisTemplate, connectionFactory);
+		}
+	}
+}
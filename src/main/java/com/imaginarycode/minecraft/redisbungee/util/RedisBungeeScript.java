@@ -0,0 +1,20 @@
+package com.imaginarycode.minecraft.redisbungee.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+
+/**
+ * Marks the {@link org.springframework.data.redis.core.script.RedisScript} beans of RedisBungee. The Spring context
+ * is shared with other plugins, so {@link ScriptRegistry} only picks up scripts carrying this qualifier.
+ *
+ * @since 0.3.10
+ */
+@Qualifier
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.FIELD, ElementType.PARAMETER, ElementType.TYPE})
+public @interface RedisBungeeScript {
+}
@@ -0,0 +1,27 @@
+package com.imaginarycode.minecraft.redisbungee.util;
+
+import java.nio.charset.StandardCharsets;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Converts the plain strings RedisBungee passes to its scripts and raw commands, such as hash fields, proxy ids and
+ * numbers. Values stored through the template's serializers are not plain strings, see {@link UuidMemberCodec}.
+ *
+ * @since 0.3.10
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RedisBytes {
+
+	public static byte[] raw(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param raw a bulk string as Redis returned it
+	 */
+	public static String string(Object raw) {
+		return new String((byte[]) raw, StandardCharsets.UTF_8);
+	}
+}
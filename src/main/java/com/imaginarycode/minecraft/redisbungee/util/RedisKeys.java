@@ -0,0 +1,125 @@
+package com.imaginarycode.minecraft.redisbungee.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+
+/**
+ * Names the keys RedisBungee keeps in Redis.
+ * <p>
+ * Outside of cluster mode the keys keep their plain names. In cluster mode only the small keys the proxies coordinate
+ * through, the heartbeats, counters, liveness keys and the integrity leader, start with the {@value #NETWORK_TAG} hash
+ * tag and share a slot. Each proxy and server set is tagged with its own name, player hashes stay untagged and the UUID
+ * cache is split into {@link RedisBungeeConfiguration#getUuidCacheShards()} hashes, so those spread over the cluster.
+ * A script in cluster mode only touches the keys of one slot.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class RedisKeys {
+
+	public static final String NETWORK_TAG = "{redisbungee}";
+
+	/**
+	 * Hash of proxy id to the number of players on that proxy, maintained by the transition scripts.
+	 */
+	public static final String PROXY_COUNTS = "proxy-player-counts";
+	/**
+	 * Hash of server name to the number of players on that server, maintained by the transition scripts.
+	 */
+	public static final String SERVER_COUNTS = "server-player-counts";
+
+	private static final String UUID_CACHE = "uuid-cache";
+	private static final String LIVENESS_PREFIX = "heartbeat:";
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	public boolean isCluster() {
+		return configuration.isCluster();
+	}
+
+	public String heartbeats() {
+		return network("heartbeats");
+	}
+
+	public String proxyCounts() {
+		return network(PROXY_COUNTS);
+	}
+
+	public String serverCounts() {
+		return network(SERVER_COUNTS);
+	}
+
+	public String proxyPlayers(String proxy) {
+		return "proxy:" + tag(proxy) + ":usersOnline";
+	}
+
+	public String serverPlayers(String server) {
+		return "server:" + tag(server) + ":usersOnline";
+	}
+
+	public String integrityLeader() {
+		return network("integrity-leader");
+	}
+
+	/**
+	 * @return the liveness key of a proxy, see {@link RedisBungeeConfiguration#isLivenessKeys()}
+	 */
+	public String liveness(String proxy) {
+		return livenessPrefix() + proxy;
+	}
+
+	public String livenessPrefix() {
+		return network(LIVENESS_PREFIX);
+	}
+
+	public String player(UUID player) {
+		return "player:" + player;
+	}
+
+	/**
+	 * @param field a lower case name or a UUID
+	 * @return the hash of the UUID cache the field is kept in
+	 */
+	public String uuidCache(String field) {
+		if (!isCluster())
+			return UUID_CACHE;
+		return uuidCacheShard((field.hashCode() & Integer.MAX_VALUE) % configuration.getUuidCacheShards());
+	}
+
+	/**
+	 * @return all hashes of the UUID cache
+	 */
+	public List<String> uuidCaches() {
+		if (!isCluster())
+			return Collections.singletonList(UUID_CACHE);
+
+		List<String> keys = new ArrayList<>(configuration.getUuidCacheShards());
+		for (int i = 0; i < configuration.getUuidCacheShards(); i++) {
+			keys.add(uuidCacheShard(i));
+		}
+		return keys;
+	}
+
+	private static String uuidCacheShard(int shard) {
+		return UUID_CACHE + ":{" + shard + "}";
+	}
+
+	private String network(String key) {
+		return isCluster() ? NETWORK_TAG + key : key;
+	}
+
+	/**
+	 * @return the name, as the hash tag of its own slot in cluster mode
+	 */
+	private String tag(String name) {
+		return isCluster() ? "{" + name + "}" : name;
+	}
+}
@@ -0,0 +1,210 @@
+package com.imaginarycode.minecraft.redisbungee.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultScriptExecutor;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.script.ScriptExecutor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungee;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+
+import de.pesacraft.shares.config.CustomRedisTemplate;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Runs the Lua scripts of RedisBungee, which are the {@link RedisScript} beans marked with {@link RedisBungeeScript}.
+ * <p>
+ * The scripts are loaded with {@code SCRIPT LOAD} when the plugin starts, and only their SHA1 is sent with
+ * {@code EVALSHA} afterwards. If Redis answers {@code NOSCRIPT}, because it was restarted or failed over to a replica
+ * that never saw the script, the script is loaded again and the call repeated. The time each script takes is recorded
+ * in a {@code scripts.<bean name>} histogram.
+ * <p>
+ * Script arguments are passed to Redis as they are and results are returned as Redis sends them, so arguments have to
+ * be serialized already.
+ * <p>
+ * Spring Data Redis cannot run scripts on a cluster, so in cluster mode they are run with the native Jedis cluster
+ * client, which sends each call to the node holding the slot of its keys.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class ScriptRegistry implements InitializingBean {
+
+	@Autowired
+	private RedisBungee plugin;
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private CustomRedisTemplate redisTemplate;
+
+	@Autowired
+	private RedisBungeeMetrics metrics;
+
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	@RedisBungeeScript
+	private Map<String, RedisScript<?>> scripts;
+
+	// The histogram of each script, by SHA1.
+	private final Map<String, String> histograms = new HashMap<>();
+	private ScriptExecutor<String> executor;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		for (Map.Entry<String, RedisScript<?>> entry : scripts.entrySet()) {
+			histograms.put(entry.getValue().getSha1(), "scripts." + entry.getKey());
+		}
+		executor = new ReloadingScriptExecutor(redisTemplate);
+
+		try {
+			loadAll();
+		} catch (Exception e) {
+			// They are loaded on first use instead.
+			plugin.getLogger().log(Level.WARNING, "Unable to load the Lua scripts into Redis", e);
+		}
+	}
+
+	/**
+	 * Loads every script into the script cache of Redis, in a single round trip. In cluster mode the scripts run on
+	 * the node of whichever slot their keys are in, so they are loaded into every node the client knows of. Nodes
+	 * that are unreachable now, or join later, load them on first use.
+	 */
+	public void loadAll() {
+		if (redisKeys.isCluster()) {
+			redisTemplate.execute((RedisCallback<Object>) connection -> {
+				for (Map.Entry<String, JedisPool> node : cluster(connection).getClusterNodes().entrySet()) {
+					try (Jedis jedis = node.getValue().getResource()) {
+						for (RedisScript<?> script : scripts.values()) {
+							jedis.scriptLoad(bytes(script));
+						}
+					} catch (Exception e) {
+						plugin.getLogger().log(Level.WARNING, "Unable to load the Lua scripts into " + node.getKey(), e);
+					}
+				}
+				return null;
+			});
+			return;
+		}
+
+		redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			for (RedisScript<?> script : scripts.values()) {
+				connection.scriptLoad(bytes(script));
+			}
+			return null;
+		});
+	}
+
+	public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+		long start = System.nanoTime();
+		try {
+			if (redisKeys.isCluster())
+				return evalOnCluster(script, keys, args);
+			return executor.execute(script, null, null, keys, args);
+		} finally {
+			String histogram = histograms.get(script.getSha1());
+			metrics.recordLatency(histogram != null ? histogram : "scripts.other", System.nanoTime() - start);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T evalOnCluster(final RedisScript<T> script, List<String> keys, Object[] args) {
+		final int numKeys = keys.size();
+		final byte[][] keysAndArgs = new byte[numKeys + args.length][];
+		for (int i = 0; i < numKeys; i++) {
+			keysAndArgs[i] = key(keys.get(i));
+		}
+		for (int i = 0; i < args.length; i++) {
+			keysAndArgs[numKeys + i] = (byte[]) args[i];
+		}
+
+		final byte[] sha1 = script.getSha1().getBytes(StandardCharsets.UTF_8);
+		return redisTemplate.execute((RedisCallback<T>) connection -> {
+			JedisCluster cluster = cluster(connection);
+			Object result;
+			try {
+				result = cluster.evalsha(sha1, numKeys, keysAndArgs);
+			} catch (Exception e) {
+				if (!isNoScript(e))
+					throw e;
+
+				metrics.increment("scripts.reloads");
+				// Loaded into the node of the first key, where the call goes.
+				cluster.scriptLoad(bytes(script), numKeys > 0 ? keysAndArgs[0] : key(redisKeys.heartbeats()));
+				result = cluster.evalsha(sha1, numKeys, keysAndArgs);
+			}
+			return script.getResultType() == null ? null : (T) result;
+		});
+	}
+
+	private static JedisCluster cluster(RedisConnection connection) {
+		Object nativeConnection = connection.getNativeConnection();
+		if (!(nativeConnection instanceof JedisCluster))
+			throw new InvalidDataAccessApiUsageException("Cluster mode needs a Jedis cluster connection, not " + nativeConnection);
+		return (JedisCluster) nativeConnection;
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] key(String key) {
+		return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+	}
+
+	private static byte[] bytes(RedisScript<?> script) {
+		return script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static boolean isNoScript(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT"))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Loads a script Redis lost with {@code SCRIPT LOAD} and repeats the {@code EVALSHA}, where
+	 * {@link DefaultScriptExecutor} would fall back to {@code EVAL} and count neither.
+	 */
+	private class ReloadingScriptExecutor extends DefaultScriptExecutor<String> {
+
+		ReloadingScriptExecutor(RedisTemplate<String, ?> template) {
+			super(template);
+		}
+
+		@Override
+		protected <T> T eval(RedisConnection connection, RedisScript<T> script, ReturnType returnType, int numKeys,
+				byte[][] keysAndArgs, RedisSerializer<T> resultSerializer) {
+			Object result;
+			try {
+				result = connection.evalSha(script.getSha1(), returnType, numKeys, keysAndArgs);
+			} catch (Exception e) {
+				if (!isNoScript(e))
+					throw e;
+
+				metrics.increment("scripts.reloads");
+				connection.scriptLoad(bytes(script));
+				result = connection.evalSha(script.getSha1(), returnType, numKeys, keysAndArgs);
+			}
+			return script.getResultType() == null ? null : deserializeResult(resultSerializer, result);
+		}
+	}
+}
@@ -0,0 +1,348 @@
+package com.imaginarycode.minecraft.redisbungee.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Resource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import com.google.common.collect.Lists;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+
+import de.pesacraft.shares.config.CustomRedisTemplate;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import static com.imaginarycode.minecraft.redisbungee.util.RedisBytes.raw;
+import static com.imaginarycode.minecraft.redisbungee.util.RedisBytes.string;
+
+/**
+ * Reads and writes the members of the {@code proxy:<id>:usersOnline} and {@code server:<name>:usersOnline} sets.
+ * <p>
+ * A player is stored either as the JSON string of their UUID, as {@link org.springframework.data.redis.core.SetOperations}
+ * writes it, or as the 16 bytes of the UUID if {@link RedisBungeeConfiguration#isBinaryUuids()} is set. Both forms are
+ * always read and removed, so proxies can be switched one at a time.
+ *
+ * @since 0.3.10
+ */
+@Component
+public class UuidMemberCodec {
+
+	private static final int BINARY_LENGTH = 16;
+	// Players per script call, so Redis is never blocked for long.
+	private static final int BATCH = 500;
+
+	/**
+	 * Hands the members Redis returns to the caller as they are, for pipelines.
+	 */
+	private static final RedisSerializer<byte[]> RAW = new RedisSerializer<byte[]>() {
+		@Override
+		public byte[] serialize(byte[] bytes) {
+			return bytes;
+		}
+
+		@Override
+		public byte[] deserialize(byte[] bytes) {
+			return bytes;
+		}
+	};
+
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
+	private CustomRedisTemplate redisTemplate;
+
+	@Autowired
+	private RedisBungeeConfiguration configuration;
+
+	@Autowired
+	private ScriptRegistry scriptRegistry;
+
+	@Autowired
+	private RedisScript<Long> convertMembersScript;
+
+	@Autowired
+	@SuppressWarnings("rawtypes")
+	private RedisScript<List> scanMembersScript;
+
+	@Autowired
+	@SuppressWarnings("rawtypes")
+	private RedisScript<List> findMembersScript;
+
+	/**
+	 * @return the member this proxy adds for the player
+	 */
+	public byte[] encode(UUID uuid) {
+		return configuration.isBinaryUuids() ? binary(uuid) : text(uuid);
+	}
+
+	/**
+	 * @return the member proxies with the other setting add for the player
+	 */
+	public byte[] encodeAlternate(UUID uuid) {
+		return configuration.isBinaryUuids() ? text(uuid) : binary(uuid);
+	}
+
+	private static byte[] binary(UUID uuid) {
+		return ByteBuffer.allocate(BINARY_LENGTH)
+				.putLong(uuid.getMostSignificantBits())
+				.putLong(uuid.getLeastSignificantBits())
+				.array();
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] text(UUID uuid) {
+		return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(uuid.toString());
+	}
+
+	/**
+	 * @return the player of a member in either form, or null if it is not a UUID
+	 */
+	public UUID decode(byte[] member) {
+		if (member.length == BINARY_LENGTH) {
+			ByteBuffer buffer = ByteBuffer.wrap(member);
+			return new UUID(buffer.getLong(), buffer.getLong());
+		}
+		Object value = redisTemplate.getValueSerializer().deserialize(member);
+		try {
+			return value == null ? null : UUID.fromString(value.toString());
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decodes the members of a set, skipping anything that is not a UUID.
+	 */
+	public CompactUuidSet decode(Collection<byte[]> members) {
+		CompactUuidSet.Builder builder = new CompactUuidSet.Builder(members.size());
+		for (byte[] member : members) {
+			if (member.length == BINARY_LENGTH) {
+				ByteBuffer buffer = ByteBuffer.wrap(member);
+				builder.add(buffer.getLong(), buffer.getLong());
+			} else {
+				Object value = redisTemplate.getValueSerializer().deserialize(member);
+				if (value != null)
+					builder.add(value.toString());
+			}
+		}
+		return builder.build();
+	}
+
+	public CompactUuidSet members(String key) {
+		return members(redisTemplate, key);
+	}
+
+	/**
+	 * Fetches a set from the node of {@code template}, such as a replica picked by {@link ReadRouter}.
+	 */
+	public CompactUuidSet members(RedisOperations<String, ?> template, String key) {
+		final byte[] rawKey = key(key);
+		return decode(nullToEmpty(template.execute((RedisCallback<Set<byte[]>>) connection -> connection.sMembers(rawKey))));
+	}
+
+	/**
+	 * Fetches several sets in a single round trip, or one round trip per set in cluster mode, where connections
+	 * cannot pipeline.
+	 *
+	 * @return the players in each set, in the order of {@code keys}
+	 */
+	@SuppressWarnings("unchecked")
+	public List<CompactUuidSet> members(List<String> keys) {
+		if (configuration.isCluster()) {
+			List<CompactUuidSet> sets = new ArrayList<>(keys.size());
+			for (String key : keys) {
+				sets.add(members(key));
+			}
+			return sets;
+		}
+
+		final List<byte[]> rawKeys = keys(keys);
+		List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+			for (byte[] rawKey : rawKeys) {
+				connection.sMembers(rawKey);
+			}
+			return null;
+		}, RAW);
+
+		List<CompactUuidSet> sets = new ArrayList<>(results.size());
+		for (Object result : results) {
+			sets.add(decode(nullToEmpty((Set<byte[]>) result)));
+		}
+		return sets;
+	}
+
+	/**
+	 * @return the players in any of the sets, which are fetched one by one in cluster mode, where each set has its
+	 * own slot
+	 */
+	public CompactUuidSet union(List<String> keys) {
+		if (keys.isEmpty())
+			return CompactUuidSet.of();
+		if (configuration.isCluster()) {
+			CompactUuidSet.Builder union = new CompactUuidSet.Builder(0);
+			for (CompactUuidSet set : members(keys)) {
+				for (UUID uuid : set) {
+					union.add(uuid);
+				}
+			}
+			return union.build();
+		}
+
+		final byte[][] rawKeys = keys(keys).toArray(new byte[0][]);
+		return decode(nullToEmpty(redisTemplate.execute((RedisCallback<Set<byte[]>>) connection -> connection.sUnion(rawKeys))));
+	}
+
+	public boolean isMember(String key, UUID uuid) {
+		final byte[] rawKey = key(key);
+		final byte[] member = encode(uuid);
+		final byte[] alternate = encodeAlternate(uuid);
+		return redisTemplate.execute((RedisCallback<Boolean>) connection ->
+				connection.sIsMember(rawKey, member) || connection.sIsMember(rawKey, alternate));
+	}
+
+	public void remove(String key, UUID uuid) {
+		remove(key, Collections.singletonList(uuid));
+	}
+
+	/**
+	 * Removes the players from a set in both forms, with a single command.
+	 */
+	public void remove(String key, Collection<UUID> players) {
+		if (players.isEmpty())
+			return;
+
+		final byte[] rawKey = key(key);
+		final byte[][] members = new byte[players.size() * 2][];
+		int i = 0;
+		for (UUID player : players) {
+			members[i++] = encode(player);
+			members[i++] = encodeAlternate(player);
+		}
+		redisTemplate.execute((RedisCallback<Long>) connection -> connection.sRem(rawKey, members));
+	}
+
+	/**
+	 * Fetches the next page of a set. Unlike the cursor of {@link RedisConnection#sScan}, the cursor of a page does
+	 * not hold a connection, so a scan can be continued much later. Members may be returned more than once.
+	 *
+	 * @param cursor 0 to start, or the cursor of the previous page
+	 * @param count the number of members to aim for, Redis may return more or fewer
+	 */
+	public ScanPage scan(String key, long cursor, int count) {
+		List<?> result = scriptRegistry.execute(scanMembersScript, Collections.singletonList(key),
+				new Object[]{raw(String.valueOf(cursor)), raw(String.valueOf(count))});
+
+		List<byte[]> members = new ArrayList<>(result.size() - 1);
+		for (int i = 1; i < result.size(); i++) {
+			members.add((byte[]) result.get(i));
+		}
+		return new ScanPage(Long.parseLong(string(result.get(0))), decode(members));
+	}
+
+	/**
+	 * Looks players up in several sets, {@value #BATCH} players per round trip, or per set and round trip in cluster
+	 * mode, where each set has its own slot.
+	 *
+	 * @return the players that are in any of the sets
+	 */
+	public CompactUuidSet find(List<String> keys, Collection<UUID> players) {
+		if (keys.isEmpty() || players.isEmpty())
+			return CompactUuidSet.of();
+
+		CompactUuidSet.Builder found = new CompactUuidSet.Builder(0);
+		List<UUID> batch = new ArrayList<>(BATCH);
+		List<byte[]> args = new ArrayList<>(BATCH * 2);
+		for (Iterator<UUID> it = players.iterator(); it.hasNext(); ) {
+			UUID player = it.next();
+			batch.add(player);
+			args.add(encode(player));
+			args.add(encodeAlternate(player));
+			if (batch.size() == BATCH || !it.hasNext()) {
+				for (List<String> scriptKeys : configuration.isCluster() ? Lists.partition(keys, 1) : Collections.singletonList(keys)) {
+					for (Object position : scriptRegistry.execute(findMembersScript, scriptKeys, args.toArray())) {
+						found.add(batch.get(((Number) position).intValue() - 1));
+					}
+				}
+				batch.clear();
+				args.clear();
+			}
+		}
+		return found.build();
+	}
+
+	/**
+	 * Rewrites the members of a set that are in the other form into the form this proxy adds. Members are swapped by
+	 * a script, so a player who left in the meantime is not added back.
+	 *
+	 * @return the number of members converted
+	 */
+	public long convert(String key) {
+		List<String> keys = Collections.singletonList(key);
+		final byte[] rawKey = key(key);
+		Set<byte[]> members = nullToEmpty(redisTemplate.execute((RedisCallback<Set<byte[]>>) connection -> connection.sMembers(rawKey)));
+
+		boolean binary = configuration.isBinaryUuids();
+		long converted = 0;
+		List<byte[]> args = new ArrayList<>(BATCH * 2);
+		for (byte[] member : members) {
+			if ((member.length == BINARY_LENGTH) == binary)
+				continue;
+			UUID uuid = decode(member);
+			if (uuid == null)
+				continue;
+
+			args.add(member);
+			args.add(encode(uuid));
+			if (args.size() == BATCH * 2) {
+				converted += scriptRegistry.execute(convertMembersScript, keys, args.toArray());
+				args.clear();
+			}
+		}
+		if (!args.isEmpty())
+			converted += scriptRegistry.execute(convertMembersScript, keys, args.toArray());
+		return converted;
+	}
+
+	private static Set<byte[]> nullToEmpty(Set<byte[]> members) {
+		return members == null ? Collections.<byte[]>emptySet() : members;
+	}
+
+	@SuppressWarnings("unchecked")
+	private byte[] key(String key) {
+		return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+	}
+
+	private List<byte[]> keys(List<String> keys) {
+		List<byte[]> rawKeys = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			rawKeys.add(key(key));
+		}
+		return rawKeys;
+	}
+
+	/**
+	 * A page of a set scanned with {@link #scan(String, long, int)}.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	public static class ScanPage {
+		/**
+		 * The cursor to fetch the next page with, 0 once the whole set was returned.
+		 */
+		private final long cursor;
+		private final CompactUuidSet players;
+	}
+}
@@ -1,15 +1,17 @@
 package com.imaginarycode.minecraft.redisbungee.util.uuid;
 
 import com.google.common.base.Charsets;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.gson.Gson;
 import com.imaginarycode.minecraft.redisbungee.RedisBungee;
 import com.imaginarycode.minecraft.redisbungee.RedisBungeeCore;
+import com.imaginarycode.minecraft.redisbungee.util.ReadRouter;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.connection.ProxiedPlayer;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisException;
@@ -37,9 +39,15 @@ public final class UUIDTranslator {
 	@Autowired
 	private RedisBungee plugin;
 
-	@Resource(name = "redisTemplate")
+	@Resource(name = RedisBungeeCore.REDIS_TEMPLATE)
 	private HashOperations<String, String, String> hashOperations;
 
+	@Autowired
+	private RedisKeys redisKeys;
+
+	@Autowired
+	private ReadRouter readRouter;
+
 	@Autowired
 	private UUIDFetcher uuidFetcher;
 
@@ -98,16 +106,15 @@ public final class UUIDTranslator {
 		}
 
 		// Let's try Redis.
-		String stored = hashOperations.get("uuid-cache", player.toLowerCase());
+		String stored = getStored(player.toLowerCase());
 		if (stored != null) {
 			// Found an entry value. Deserialize it.
 			CachedUUIDEntry entry = gson.fromJson(stored, CachedUUIDEntry.class);
 
 			// Check for expiry:
 			if (entry.expired()) {
-				hashOperations.delete("uuid-cache", player.toLowerCase());
 				// Doesn't hurt to also remove the UUID entry as well.
-				hashOperations.delete("uuid-cache", entry.getUuid().toString());
+				deleteStored(player.toLowerCase(), entry.getUuid().toString());
 			} else {
 				nameToUuidMap.put(player.toLowerCase(), entry);
 				uuidToNameMap.put(entry.getUuid(), entry);
@@ -153,17 +160,16 @@ public final class UUIDTranslator {
 		}
 
 		// Okay, it wasn't locally cached. Let's try Redis.
-		String stored = hashOperations.get("uuid-cache", player.toString());
+		String stored = getStored(player.toString());
 		if (stored != null) {
 			// Found an entry value. Deserialize it.
 			CachedUUIDEntry entry = gson.fromJson(stored, CachedUUIDEntry.class);
 
 			// Check for expiry:
 			if (entry.expired()) {
-				hashOperations.delete("uuid-cache", player.toString());
 				// Doesn't hurt to also remove the named entry as well.
 				// TODO: Since UUIDs are fixed, we could look up the name and see if the UUID matches.
-				hashOperations.delete("uuid-cache", entry.getName());
+				deleteStored(player.toString(), entry.getName());
 			} else {
 				nameToUuidMap.put(entry.getName().toLowerCase(), entry);
 				uuidToNameMap.put(player, entry);
@@ -192,10 +198,239 @@ public final class UUIDTranslator {
 			return null;
 	}
 
+	/**
+	 * Translates many names at once. Names that are not known locally are read from Redis with a single HMGET, and if
+	 * {@code expensiveLookups} is true the remaining ones are fetched from Mojang in as few requests as possible.
+	 *
+	 * @return the UUIDs of the names that could be translated, keyed by the names as given
+	 */
+	public final Map<String, UUID> getTranslatedUuids(@NonNull Collection<String> players, boolean expensiveLookups) {
+		Map<String, UUID> uuids = new HashMap<>();
+		List<String> misses = new ArrayList<>();
+		for (String player : players) {
+			UUID uuid = getLocalUuid(player);
+			if (uuid != null)
+				uuids.put(player, uuid);
+			else
+				misses.add(player);
+		}
+
+		if (misses.isEmpty())
+			return uuids;
+
+		List<String> keys = new ArrayList<>(misses.size());
+		for (String player : misses) {
+			keys.add(player.toLowerCase());
+		}
+
+		List<String> stored = multiGetStored(keys);
+		List<String> remaining = new ArrayList<>();
+		for (int i = 0; i < misses.size(); i++) {
+			CachedUUIDEntry entry = readStored(stored.get(i));
+			if (entry != null)
+				uuids.put(misses.get(i), entry.getUuid());
+			else
+				remaining.add(misses.get(i));
+		}
+
+		if (remaining.isEmpty() || !expensiveLookups)
+			return uuids;
+
+		Map<String, UUID> fetched;
+		try {
+			fetched = uuidFetcher.getUUIDs(remaining, true);
+		} catch (Exception e) {
+			plugin.getLogger().log(Level.SEVERE, "Unable to fetch UUIDs from Mojang for " + remaining, e);
+			return uuids;
+		}
+		for (Map.Entry<String, UUID> entry : fetched.entrySet()) {
+			for (String player : remaining) {
+				if (entry.getKey().equalsIgnoreCase(player)) {
+					persistInfo(entry.getKey(), entry.getValue());
+					uuids.put(player, entry.getValue());
+				}
+			}
+		}
+		return uuids;
+	}
+
+	/**
+	 * Translates many UUIDs at once. UUIDs that are not known locally are read from Redis with a single HMGET, and if
+	 * {@code expensiveLookups} is true the remaining ones are fetched from Mojang one by one.
+	 *
+	 * @return the names of the UUIDs that could be translated
+	 */
+	public final Map<UUID, String> getNamesFromUuids(@NonNull Collection<UUID> players, boolean expensiveLookups) {
+		Map<UUID, String> names = new HashMap<>();
+		List<UUID> misses = new ArrayList<>();
+		for (UUID player : players) {
+			String name = getLocalName(player);
+			if (name != null)
+				names.put(player, name);
+			else
+				misses.add(player);
+		}
+
+		if (misses.isEmpty())
+			return names;
+
+		List<String> keys = new ArrayList<>(misses.size());
+		for (UUID player : misses) {
+			keys.add(player.toString());
+		}
+
+		List<String> stored = multiGetStored(keys);
+		List<UUID> remaining = new ArrayList<>();
+		for (int i = 0; i < misses.size(); i++) {
+			CachedUUIDEntry entry = readStored(stored.get(i));
+			if (entry != null)
+				names.put(misses.get(i), entry.getName());
+			else
+				remaining.add(misses.get(i));
+		}
+
+		if (!expensiveLookups || !ProxyServer.getInstance().getConfig().isOnlineMode())
+			return names;
+
+		for (UUID player : remaining) {
+			String name;
+			try {
+				name = Iterables.getLast(nameFetcher.nameHistoryFromUuid(player), null);
+			} catch (Exception e) {
+				plugin.getLogger().log(Level.SEVERE, "Unable to fetch name from Mojang for " + player, e);
+				continue;
+			}
+			if (name != null) {
+				persistInfo(name, player);
+				names.put(player, name);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * @return whether the name can be translated without a round trip to Redis
+	 */
+	public final boolean isCached(@NonNull String player) {
+		return getLocalUuid(player) != null;
+	}
+
+	/**
+	 * @return whether the UUID can be translated without a round trip to Redis
+	 */
+	public final boolean isCached(@NonNull UUID player) {
+		return getLocalName(player) != null;
+	}
+
+	private UUID getLocalUuid(String player) {
+		ProxiedPlayer online = ProxyServer.getInstance().getPlayer(player);
+		if (online != null)
+			return online.getUniqueId();
+
+		CachedUUIDEntry cachedUUIDEntry = nameToUuidMap.get(player.toLowerCase());
+		if (cachedUUIDEntry != null && !cachedUUIDEntry.expired())
+			return cachedUUIDEntry.getUuid();
+
+		if (UUID_PATTERN.matcher(player).find())
+			return UUID.fromString(player);
+
+		if (MOJANGIAN_UUID_PATTERN.matcher(player).find())
+			return getMojangianUUID(player);
+
+		if (!ProxyServer.getInstance().getConfig().isOnlineMode())
+			return UUID.nameUUIDFromBytes(("OfflinePlayer:" + player).getBytes(Charsets.UTF_8));
+
+		return null;
+	}
+
+	private String getLocalName(UUID player) {
+		ProxiedPlayer online = ProxyServer.getInstance().getPlayer(player);
+		if (online != null)
+			return online.getName();
+
+		CachedUUIDEntry cachedUUIDEntry = uuidToNameMap.get(player);
+		if (cachedUUIDEntry != null && !cachedUUIDEntry.expired())
+			return cachedUUIDEntry.getName();
+
+		return null;
+	}
+
+	/**
+	 * Deserializes an entry read from {@code uuid-cache} and caches it locally, or removes it from Redis if it expired.
+	 */
+	private CachedUUIDEntry readStored(String stored) {
+		if (stored == null)
+			return null;
+
+		CachedUUIDEntry entry = gson.fromJson(stored, CachedUUIDEntry.class);
+		if (entry.expired()) {
+			deleteStored(entry.getName().toLowerCase(), entry.getUuid().toString());
+			return null;
+		}
+
+		nameToUuidMap.put(entry.getName().toLowerCase(), entry);
+		uuidToNameMap.put(entry.getUuid(), entry);
+		return entry;
+	}
+
 	public final void persistInfo(String name, UUID uuid) {
+		String json = cacheInfo(name, uuid);
+		Map<String, Map<String, String>> byKey = new LinkedHashMap<>();
+		for (String field : Arrays.asList(name.toLowerCase(), uuid.toString())) {
+			byKey.computeIfAbsent(redisKeys.uuidCache(field), key -> new HashMap<>()).put(field, json);
+		}
+		for (Map.Entry<String, Map<String, String>> entry : byKey.entrySet()) {
+			hashOperations.putAll(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private String getStored(String field) {
+		return readRouter.forRead("uuidCache").<String, String>opsForHash().get(redisKeys.uuidCache(field), field);
+	}
+
+	/**
+	 * Reads entries of {@code uuid-cache} with one HMGET per hash they are kept in, see {@link RedisKeys#uuidCache}.
+	 *
+	 * @return the entries in the order of {@code fields}, null where there is none
+	 */
+	private List<String> multiGetStored(List<String> fields) {
+		Map<String, List<Integer>> byKey = new LinkedHashMap<>();
+		for (int i = 0; i < fields.size(); i++) {
+			byKey.computeIfAbsent(redisKeys.uuidCache(fields.get(i)), key -> new ArrayList<>()).add(i);
+		}
+
+		HashOperations<String, String, String> reads = readRouter.forRead("uuidCache").opsForHash();
+		String[] stored = new String[fields.size()];
+		for (Map.Entry<String, List<Integer>> entry : byKey.entrySet()) {
+			List<String> keyFields = new ArrayList<>(entry.getValue().size());
+			for (int i : entry.getValue()) {
+				keyFields.add(fields.get(i));
+			}
+			List<String> values = reads.multiGet(entry.getKey(), keyFields);
+			for (int i = 0; i < values.size(); i++) {
+				stored[entry.getValue().get(i)] = values.get(i);
+			}
+		}
+		return Arrays.asList(stored);
+	}
+
+	private void deleteStored(String... fields) {
+		Map<String, List<Object>> byKey = new LinkedHashMap<>();
+		for (String field : fields) {
+			byKey.computeIfAbsent(redisKeys.uuidCache(field), key -> new ArrayList<>()).add(field);
+		}
+		for (Map.Entry<String, List<Object>> entry : byKey.entrySet()) {
+			hashOperations.delete(entry.getKey(), entry.getValue().toArray());
+		}
+	}
+
+	/**
+	 * Caches the name and UUID locally and returns the entry to store in {@code uuid-cache}, for callers that
+	 * write it to Redis themselves.
+	 */
+	public final String cacheInfo(String name, UUID uuid) {
 		addToMaps(name, uuid);
-		String json = gson.toJson(uuidToNameMap.get(uuid));
-		hashOperations.putAll("uuid-cache", ImmutableMap.of(name.toLowerCase(), json, uuid.toString(), json));
+		return gson.toJson(uuidToNameMap.get(uuid));
 	}
 
 	@RequiredArgsConstructor
@@ -0,0 +1,15 @@
+-- Takes or renews a lease that only one proxy may hold at a time.
+-- KEYS[1] the lease
+-- ARGV[1] proxy id, ARGV[2] lease time in milliseconds
+-- Returns 1 if the proxy holds the lease now, 0 if another proxy does.
+local c = redis.call
+
+if c("GET", KEYS[1]) == ARGV[1] then
+    c("PEXPIRE", KEYS[1], ARGV[2])
+    return 1
+end
+
+if c("SET", KEYS[1], ARGV[1], "NX", "PX", ARGV[2]) then
+    return 1
+end
+return 0
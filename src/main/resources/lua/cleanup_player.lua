@@ -0,0 +1,27 @@
+-- Removes a player from the network and announces the logout. Not used in cluster mode, see release_player.
+-- KEYS[1] player:<uuid>, KEYS[2] proxy:<id>:usersOnline, KEYS[3] proxy-player-counts, KEYS[4] server-player-counts,
+-- KEYS[5] server:<name>:usersOnline of the server the player is on (optional)
+-- ARGV[1] set member, ARGV[2] set member in the other form (see UuidMemberCodec), ARGV[3] data channel,
+-- ARGV[4] data message (empty to stay silent), ARGV[5] logout timestamp, ARGV[6] proxy id,
+-- ARGV[7] the server the player is on (empty without KEYS[5])
+local c = redis.call
+
+local member = ARGV[1]
+local alternate = ARGV[2]
+
+if c("SREM", KEYS[2], member, alternate) > 0 then
+    c("HINCRBY", KEYS[3], ARGV[6], -1)
+end
+
+if KEYS[5] and c("SREM", KEYS[5], member, alternate) > 0 then
+    c("HINCRBY", KEYS[4], ARGV[7], -1)
+end
+
+c("HDEL", KEYS[1], "server", "ip", "proxy")
+c("HSET", KEYS[1], "online", ARGV[5])
+
+if ARGV[4] ~= "" then
+    c("PUBLISH", ARGV[3], ARGV[4])
+end
+
+return 1
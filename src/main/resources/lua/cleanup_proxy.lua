@@ -0,0 +1,55 @@
+-- Takes players of a proxy off the network, without announcing them. Used for proxies that are gone, and for players
+-- who are no longer connected to this proxy.
+-- KEYS[1] proxy:<id>:usersOnline, then (left out in cluster mode) KEYS[2] proxy-player-counts,
+-- KEYS[3] server-player-counts, the server:<name>:usersOnline sets of the servers in ARGV, then the player:<uuid>
+-- hash of each player in ARGV
+-- ARGV[1] proxy id, ARGV[2] logout timestamp, ARGV[3] the number of servers, followed by their names, followed by
+-- the UUID of each player, its member as read from the set, and its set member in the form this proxy adds and in the
+-- other form. Members read from the set are removed even if they are in neither form.
+-- Returns the number of players left in the set, followed by the UUIDs of the players taken off the network.
+-- Players who are no longer in the set were taken by someone else and are skipped. Players who are on another proxy
+-- by now are only removed from the set. In cluster mode the script only takes the players from the set and returns
+-- all of them, and the caller updates the counter, the player hashes and the server sets.
+local c = redis.call
+
+local full = #KEYS > 1
+local servers = tonumber(ARGV[3])
+local serverSets = {}
+for i = 1, servers do
+    serverSets[ARGV[3 + i]] = KEYS[3 + i]
+end
+
+local result = { 0 }
+local key = 4 + servers
+for i = 4 + servers, #ARGV, 4 do
+    local uuid, stored, member, alternate = ARGV[i], ARGV[i + 1], ARGV[i + 2], ARGV[i + 3]
+    if c("SREM", KEYS[1], stored, member, alternate) > 0 then
+        if not full then
+            result[#result + 1] = uuid
+        else
+            c("HINCRBY", KEYS[2], ARGV[1], -1)
+
+            local player = KEYS[key]
+            local proxy = c("HGET", player, "proxy")
+            if not proxy or proxy == ARGV[1] then
+                local server = c("HGET", player, "server")
+                local set = server and serverSets[server]
+                if set and c("SREM", set, stored, member, alternate) > 0 then
+                    c("HINCRBY", KEYS[3], server, -1)
+                end
+
+                c("HDEL", player, "server", "ip", "proxy")
+                c("HSET", player, "online", ARGV[2])
+                result[#result + 1] = uuid
+            end
+        end
+    end
+    key = key + 1
+end
+
+result[1] = c("SCARD", KEYS[1])
+if full and result[1] == 0 then
+    c("HDEL", KEYS[2], ARGV[1])
+end
+
+return result
@@ -0,0 +1,15 @@
+-- Replaces members of a player set with the same players in another form, see UuidMemberCodec.
+-- KEYS[1] proxy:<id>:usersOnline or server:<name>:usersOnline
+-- ARGV[1..] pairs of the current member and its replacement
+-- Returns the number of members replaced. Members that are gone already are not added back.
+local c = redis.call
+
+local converted = 0
+for i = 1, #ARGV, 2 do
+    if c("SREM", KEYS[1], ARGV[i]) == 1 then
+        c("SADD", KEYS[1], ARGV[i + 1])
+        converted = converted + 1
+    end
+end
+
+return converted
@@ -0,0 +1,33 @@
+-- Registers players connected to this proxy who are missing from its set, without announcing them. Not used in
+-- cluster mode, where the keys are in different slots.
+-- KEYS[1] proxy:<id>:usersOnline, KEYS[2] proxy-player-counts, KEYS[3] server-player-counts, then for each player
+-- their player:<uuid> hash and the server:<name>:usersOnline set of the server they are on (left out if they are not
+-- on one)
+-- ARGV[1] proxy id, ARGV[2..] for each player the set member, the server name (empty if they are not on one), the
+-- number of player hash fields and values, then those fields and values
+-- Returns the number of players added to the proxy set.
+local c = redis.call
+
+local added = 0
+local key = 4
+local i = 2
+while i <= #ARGV do
+    local member, server, n = ARGV[i], ARGV[i + 1], tonumber(ARGV[i + 2])
+    c("HMSET", KEYS[key], unpack(ARGV, i + 3, i + 2 + n))
+    key = key + 1
+
+    if c("SADD", KEYS[1], member) == 1 then
+        c("HINCRBY", KEYS[2], ARGV[1], 1)
+        added = added + 1
+    end
+
+    if server ~= "" then
+        if c("SADD", KEYS[key], member) == 1 then
+            c("HINCRBY", KEYS[3], server, 1)
+        end
+        key = key + 1
+    end
+    i = i + 3 + n
+end
+
+return added
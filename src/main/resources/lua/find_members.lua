@@ -0,0 +1,17 @@
+-- Finds the players that are in any of the given sets.
+-- KEYS[1..] proxy:<id>:usersOnline or server:<name>:usersOnline, a single one in cluster mode
+-- ARGV[1..] pairs of a player's set member and their member in the other form (see UuidMemberCodec)
+-- Returns the positions of the players found, counting pairs from 1.
+local c = redis.call
+
+local found = {}
+for i = 1, #ARGV, 2 do
+    for k = 1, #KEYS do
+        if c("SISMEMBER", KEYS[k], ARGV[i]) == 1 or c("SISMEMBER", KEYS[k], ARGV[i + 1]) == 1 then
+            found[#found + 1] = (i + 1) / 2
+            break
+        end
+    end
+end
+
+return found
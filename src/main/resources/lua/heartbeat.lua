@@ -0,0 +1,92 @@
+-- Stamps the heartbeat of a proxy and reads which proxies are alive and how many players they have.
+-- KEYS[1] heartbeats, KEYS[2] proxy-player-counts, KEYS[3] heartbeat:<id>
+-- ARGV[1] proxy id, ARGV[2] heartbeat timeout in milliseconds, ARGV[3] lifetime of the liveness key in
+-- milliseconds (0 without liveness keys), ARGV[4] membership channel, ARGV[5] join message, ARGV[6] "1" to read
+-- the heartbeats of all proxies, "0" to only count the players of the proxies in ARGV[7..]
+-- Returns the number of players on live proxies, the number of live proxies and the number of live proxies without a
+-- counter (older versions), followed by the ids of the live proxies, followed by the ids of those without a counter,
+-- followed by the id and the milliseconds since the last heartbeat of each lagged proxy. Without reading the
+-- heartbeats, the given proxies are taken as the live ones and their ids are not returned again. The caller counts
+-- the players of proxies without a counter, whose sets are in other slots in cluster mode.
+local c = redis.call
+
+-- TIME is not deterministic, older servers only allow writes after it with effects replication.
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+
+-- Heartbeats are stored in milliseconds.
+local curTime = c("TIME")
+local time = tonumber(curTime[1]) * 1000 + math.floor(tonumber(curTime[2]) / 1000)
+
+c("HSET", KEYS[1], ARGV[1], time)
+
+-- The key expiring tells the other proxies this one is gone, so it is announced whenever the key is created.
+if ARGV[3] ~= "0" then
+    local fresh = c("EXISTS", KEYS[3]) == 0
+    c("SET", KEYS[3], time, "PX", ARGV[3])
+    if fresh then
+        c("PUBLISH", ARGV[4], ARGV[5])
+    end
+end
+
+-- With liveness keys the caller knows the live proxies, so the heartbeats are only read now and then.
+if ARGV[6] ~= "1" then
+    local result = { 0, 0, 0 }
+    if #ARGV > 6 then
+        local counts = c("HMGET", KEYS[2], unpack(ARGV, 7))
+        for i = 1, #ARGV - 6 do
+            local count = tonumber(counts[i])
+            if count then
+                result[1] = result[1] + count
+            else
+                result[#result + 1] = ARGV[i + 6]
+            end
+        end
+    end
+    result[3] = #result - 3
+    return result
+end
+
+local counts = {}
+local raw = c("HGETALL", KEYS[2])
+for i = 1, #raw, 2 do
+    counts[raw[i]] = tonumber(raw[i + 1])
+end
+
+local timeout = tonumber(ARGV[2])
+local total = 0
+local live = {}
+local uncounted = {}
+local lagged = {}
+
+local heartbeats = c("HGETALL", KEYS[1])
+for i = 1, #heartbeats, 2 do
+    local proxy = heartbeats[i]
+    local stamp = tonumber(heartbeats[i + 1])
+    if stamp then
+        if time <= stamp + timeout then
+            live[#live + 1] = proxy
+            if counts[proxy] then
+                total = total + counts[proxy]
+            else
+                uncounted[#uncounted + 1] = proxy
+            end
+        else
+            lagged[#lagged + 1] = proxy
+            lagged[#lagged + 1] = time - stamp
+        end
+    end
+end
+
+local result = { total, #live, #uncounted }
+for _, proxy in ipairs(live) do
+    result[#result + 1] = proxy
+end
+for _, proxy in ipairs(uncounted) do
+    result[#result + 1] = proxy
+end
+for _, value in ipairs(lagged) do
+    result[#result + 1] = value
+end
+return result
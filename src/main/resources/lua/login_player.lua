@@ -0,0 +1,56 @@
+-- Registers a player logging in to this proxy, unless their player hash says they are online on a live proxy already.
+-- KEYS[1] player:<uuid>, then proxy:<id>:usersOnline, proxy-player-counts, heartbeats, uuid-cache (all left out in
+-- cluster mode)
+-- ARGV[1] set member, ARGV[2] set member in the other form (see UuidMemberCodec), ARGV[3] data channel,
+-- ARGV[4] data message (empty to stay silent), ARGV[5] proxy id, ARGV[6] lower case name, ARGV[7] uuid,
+-- ARGV[8] uuid cache entry, ARGV[9] the number of player hash fields and values, followed by them, followed by the
+-- ids of the live proxies (cluster mode only, read from the heartbeats otherwise)
+-- Returns 0 if the player is already online, 1 otherwise. In cluster mode the script only claims the player hash, and
+-- the caller writes the uuid cache entry and adds the player to the proxy set once this returned 1.
+local c = redis.call
+
+local player = KEYS[1]
+local full = #KEYS > 1
+local n = tonumber(ARGV[9])
+
+local proxy = c("HGET", player, "proxy")
+if proxy then
+    local live = false
+    if full then
+        -- TIME is not deterministic, older servers only allow writes after it with effects replication.
+        if redis.replicate_commands then
+            redis.replicate_commands()
+        end
+
+        -- Heartbeats are stored in milliseconds.
+        local curTime = c("TIME")
+        local time = tonumber(curTime[1]) * 1000 + math.floor(tonumber(curTime[2]) / 1000)
+        local stamp = tonumber(c("HGET", KEYS[4], proxy))
+        live = stamp ~= nil and time <= stamp + 30000
+    else
+        for i = 10 + n, #ARGV do
+            if ARGV[i] == proxy then
+                live = true
+                break
+            end
+        end
+    end
+    if live then
+        return 0
+    end
+end
+
+c("HMSET", player, unpack(ARGV, 10, 9 + n))
+
+if full then
+    c("HMSET", KEYS[5], ARGV[6], ARGV[8], ARGV[7], ARGV[8])
+    if c("SADD", KEYS[2], ARGV[1]) == 1 then
+        c("HINCRBY", KEYS[3], ARGV[5], 1)
+    end
+end
+
+if ARGV[4] ~= "" then
+    c("PUBLISH", ARGV[3], ARGV[4])
+end
+
+return 1
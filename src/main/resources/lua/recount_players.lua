@@ -0,0 +1,23 @@
+-- Resets the player counters of a proxy and of the given servers to the size of their sets. Not used in cluster
+-- mode, where the sets are in different slots than the counters.
+-- KEYS[1] proxy:<id>:usersOnline, KEYS[2] proxy-player-counts, KEYS[3] server-player-counts,
+-- KEYS[4..] server:<name>:usersOnline of the servers in ARGV[2..]
+-- ARGV[1] proxy id, ARGV[2..] server names
+local c = redis.call
+
+local function recount(counts, field, set)
+    local n = c("SCARD", set)
+    if n > 0 then
+        c("HSET", counts, field, n)
+    else
+        c("HDEL", counts, field)
+    end
+end
+
+recount(KEYS[2], ARGV[1], KEYS[1])
+
+for i = 2, #ARGV do
+    recount(KEYS[3], ARGV[i], KEYS[i + 2])
+end
+
+return 1
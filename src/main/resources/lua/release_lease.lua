@@ -0,0 +1,8 @@
+-- Gives up a lease, if the proxy still holds it.
+-- KEYS[1] the lease
+-- ARGV[1] proxy id
+-- Returns 1 if the lease was released.
+if redis.call("GET", KEYS[1]) == ARGV[1] then
+    return redis.call("DEL", KEYS[1])
+end
+return 0
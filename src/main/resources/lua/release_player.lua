@@ -0,0 +1,17 @@
+-- Marks a player hash as offline, unless the player is online on another proxy by now. Used in cluster mode, where
+-- the caller takes the player off the sets afterwards, since those live in other slots.
+-- KEYS[1] player:<uuid>
+-- ARGV[1] proxy id, ARGV[2] logout timestamp
+-- Returns the server the player was on (empty if they were not on one), or nothing if they are on another proxy.
+local c = redis.call
+
+local proxy = c("HGET", KEYS[1], "proxy")
+if proxy and proxy ~= ARGV[1] then
+    return {}
+end
+
+local server = c("HGET", KEYS[1], "server")
+c("HDEL", KEYS[1], "server", "ip", "proxy")
+c("HSET", KEYS[1], "online", ARGV[2])
+
+return { server or "" }
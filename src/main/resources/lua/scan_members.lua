@@ -0,0 +1,9 @@
+-- Returns one page of a player set, so callers can keep the cursor between runs.
+-- KEYS[1] proxy:<id>:usersOnline or server:<name>:usersOnline
+-- ARGV[1] cursor (0 to start), ARGV[2] number of members to aim for
+-- Returns the cursor to continue from (0 once the set was walked), followed by the members.
+local page = redis.call("SSCAN", KEYS[1], ARGV[1], "COUNT", ARGV[2])
+
+local result = page[2]
+table.insert(result, 1, page[1])
+return result
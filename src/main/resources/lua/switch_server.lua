@@ -0,0 +1,27 @@
+-- Moves a player to another server and announces the switch. Not used in cluster mode, where the keys are in
+-- different slots.
+-- KEYS[1] player:<uuid>, KEYS[2] new server:<name>:usersOnline, KEYS[3] server-player-counts,
+-- KEYS[4] previous server:<name>:usersOnline (optional)
+-- ARGV[1] set member, ARGV[2] set member in the other form (see UuidMemberCodec), ARGV[3] data channel,
+-- ARGV[4] data message (empty to stay silent), ARGV[5] new server name,
+-- ARGV[6] previous server name (empty without the previous server set)
+local c = redis.call
+
+local member = ARGV[1]
+local alternate = ARGV[2]
+
+c("HSET", KEYS[1], "server", ARGV[5])
+
+if KEYS[4] and c("SREM", KEYS[4], member, alternate) > 0 then
+    c("HINCRBY", KEYS[3], ARGV[6], -1)
+end
+
+if c("SADD", KEYS[2], member) == 1 then
+    c("HINCRBY", KEYS[3], ARGV[5], 1)
+end
+
+if ARGV[4] ~= "" then
+    c("PUBLISH", ARGV[3], ARGV[4])
+end
+
+return 1
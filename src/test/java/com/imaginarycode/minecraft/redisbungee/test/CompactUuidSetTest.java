@@ -0,0 +1,77 @@
+package com.imaginarycode.minecraft.redisbungee.test;
+
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+public class CompactUuidSetTest {
+    @Test
+    public void testMatchesHashSet() {
+        Random random = new Random(42);
+        List<String> strings = new ArrayList<>();
+        Set<UUID> expected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            expected.add(uuid);
+            strings.add(uuid.toString());
+            // Duplicates and garbage are dropped.
+            if (i % 10 == 0)
+                strings.add(uuid.toString().toUpperCase());
+        }
+        for (int i = 0; i < 100; i++) {
+            // Shares the most significant bits, and has a negative half.
+            UUID uuid = new UUID(7, random.nextLong());
+            expected.add(uuid);
+            strings.add(uuid.toString());
+        }
+        strings.add("not a uuid");
+
+        CompactUuidSet set = CompactUuidSet.fromStrings(strings);
+        Assert.assertEquals(expected, set);
+        Assert.assertEquals(set, expected);
+        Assert.assertEquals(expected.hashCode(), set.hashCode());
+        Assert.assertEquals(set, CompactUuidSet.copyOf(expected));
+        for (UUID uuid : expected) {
+            Assert.assertTrue(set.contains(uuid));
+        }
+        Assert.assertFalse(set.contains(UUID.randomUUID()));
+        Assert.assertFalse(set.contains("not a uuid"));
+    }
+
+    @Test
+    public void testDifference() {
+        UUID a = UUID.fromString("68ec43f7-234b-41b4-8764-dfb38b9ffe8c");
+        UUID b = UUID.fromString("0aa0a2e6-6b7d-4b36-9f0c-0dbd4a4b8f9a");
+        UUID c = UUID.fromString("f1e2d3c4-b5a6-4978-8695-a4b3c2d1e0f9");
+
+        CompactUuidSet left = CompactUuidSet.copyOf(Arrays.asList(a, b, c));
+        CompactUuidSet right = CompactUuidSet.copyOf(Arrays.asList(b, UUID.randomUUID()));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, c)), left.difference(right));
+        Assert.assertEquals(left, left.difference(CompactUuidSet.of()));
+        Assert.assertTrue(left.difference(left).isEmpty());
+    }
+
+    @Test
+    public void testBuilder() {
+        UUID a = UUID.fromString("68ec43f7-234b-41b4-8764-dfb38b9ffe8c");
+        UUID b = UUID.fromString("0aa0a2e6-6b7d-4b36-9f0c-0dbd4a4b8f9a");
+
+        // Starts too small, so it has to grow.
+        CompactUuidSet set = new CompactUuidSet.Builder(0)
+                .add(a)
+                .add(b.getMostSignificantBits(), b.getLeastSignificantBits())
+                .add(a.toString())
+                .add("not a uuid")
+                .build();
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), set);
+    }
+}
@@ -0,0 +1,152 @@
+package com.imaginarycode.minecraft.redisbungee.test;
+
+import com.google.gson.Gson;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.DataManagerMessage;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LoginPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.LogoutPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ProxyLostPayload;
+import com.imaginarycode.minecraft.redisbungee.manager.CachedDataManager.ServerChangePayload;
+import com.imaginarycode.minecraft.redisbungee.pubsub.DataMessageCodec;
+import com.imaginarycode.minecraft.redisbungee.pubsub.ServerNameRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+public class DataMessageCodecTest {
+    private static final UUID TARGET = UUID.fromString("68ec43f7-234b-41b4-8764-dfb38b9ffe8c");
+
+    private DataMessageCodec codec;
+
+    @Before
+    public void setUp() {
+        ServerNameRegistry registry = new ServerNameRegistry();
+        registry.register(1, "proxy1");
+        registry.register(2, "lobby");
+        registry.register(3, "survival");
+        registry.register(4, "proxy2");
+
+        codec = new DataMessageCodec();
+        ReflectionTestUtils.setField(codec, "gson", new Gson());
+        ReflectionTestUtils.setField(codec, "serverNameRegistry", registry);
+    }
+
+    @Test
+    public void testJoinRoundTrip() throws Exception {
+        DataManagerMessage<LoginPayload> message = stamp(new DataManagerMessage<>(TARGET, "proxy1",
+                DataManagerMessage.Action.JOIN, new LoginPayload(InetAddress.getByName("10.0.0.1"))));
+
+        for (DataManagerMessage<?> decoded : roundTrips(message)) {
+            assertEnvelope(message, decoded);
+            Assert.assertEquals(InetAddress.getByName("10.0.0.1"), ((LoginPayload) decoded.getPayload()).getAddress());
+        }
+    }
+
+    @Test
+    public void testLeaveRoundTrip() {
+        DataManagerMessage<LogoutPayload> message = stamp(new DataManagerMessage<>(TARGET, "proxy1",
+                DataManagerMessage.Action.LEAVE, new LogoutPayload(1234567890L)));
+
+        for (DataManagerMessage<?> decoded : roundTrips(message)) {
+            assertEnvelope(message, decoded);
+            Assert.assertEquals(1234567890L, ((LogoutPayload) decoded.getPayload()).getTimestamp());
+        }
+    }
+
+    @Test
+    public void testServerChangeRoundTrip() {
+        DataManagerMessage<ServerChangePayload> message = stamp(new DataManagerMessage<>(TARGET, "proxy1",
+                DataManagerMessage.Action.SERVER_CHANGE, new ServerChangePayload("survival", null)));
+
+        for (DataManagerMessage<?> decoded : roundTrips(message)) {
+            assertEnvelope(message, decoded);
+            Assert.assertEquals("survival", ((ServerChangePayload) decoded.getPayload()).getServer());
+            Assert.assertNull(((ServerChangePayload) decoded.getPayload()).getOldServer());
+        }
+    }
+
+    @Test
+    public void testProxyLostRoundTrip() {
+        List<UUID> players = Arrays.asList(TARGET, UUID.fromString("0aa0a2e6-6b7d-4b36-9f0c-0dbd4a4b8f9a"));
+        DataManagerMessage<ProxyLostPayload> message = stamp(new DataManagerMessage<>(ProxyLostPayload.TARGET, "proxy1",
+                DataManagerMessage.Action.PROXY_LOST, new ProxyLostPayload("proxy2", 1234567890L, players)));
+
+        for (DataManagerMessage<?> decoded : roundTrips(message)) {
+            assertEnvelope(message, decoded);
+            ProxyLostPayload payload = (ProxyLostPayload) decoded.getPayload();
+            Assert.assertEquals("proxy2", payload.getProxy());
+            Assert.assertEquals(1234567890L, payload.getTimestamp());
+            Assert.assertEquals(players, payload.getPlayers());
+        }
+    }
+
+    @Test
+    public void testBinaryIsSmaller() {
+        DataManagerMessage<ServerChangePayload> message = stamp(new DataManagerMessage<>(TARGET, "proxy1",
+                DataManagerMessage.Action.SERVER_CHANGE, new ServerChangePayload("survival", "lobby")));
+
+        Assert.assertTrue(codec.encode(message).length < codec.encodeJson(message).length() / 2);
+    }
+
+    @Test
+    public void testBatchRoundTrip() {
+        List<DataManagerMessage<?>> messages = Arrays.<DataManagerMessage<?>>asList(
+                stamp(new DataManagerMessage<>(TARGET, "proxy1",
+                        DataManagerMessage.Action.SERVER_CHANGE, new ServerChangePayload("survival", "lobby"))),
+                stamp(new DataManagerMessage<>(TARGET, "proxy1",
+                        DataManagerMessage.Action.LEAVE, new LogoutPayload(1234567890L))));
+
+        List<DataManagerMessage<?>> decoded = codec.decode(codec.encode(messages));
+        Assert.assertEquals(messages.size(), decoded.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertEnvelope(messages.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void testSingleMessageVersion() {
+        DataManagerMessage<LogoutPayload> message = stamp(new DataManagerMessage<>(TARGET, "proxy1",
+                DataManagerMessage.Action.LEAVE, new LogoutPayload(1234567890L)));
+
+        // Version 1 frames are a version 2 frame without the count.
+        byte[] batch = codec.encode(message);
+        byte[] single = new byte[batch.length - 4];
+        single[0] = 1;
+        System.arraycopy(batch, 5, single, 1, single.length - 1);
+
+        List<DataManagerMessage<?>> decoded = codec.decode(single);
+        Assert.assertEquals(1, decoded.size());
+        assertEnvelope(message, decoded.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVersion() {
+        codec.decode(new byte[]{(byte) (DataMessageCodec.BINARY_VERSION + 1)});
+    }
+
+    private static <T> DataManagerMessage<T> stamp(DataManagerMessage<T> message) {
+        message.setEpoch(42);
+        message.setSequence(7);
+        return message;
+    }
+
+    private DataManagerMessage<?>[] roundTrips(DataManagerMessage<?> message) {
+        return new DataManagerMessage<?>[]{
+                codec.decode(codec.encode(message)).get(0),
+                codec.decodeJson(codec.encodeJson(message))
+        };
+    }
+
+    private static void assertEnvelope(DataManagerMessage<?> expected, DataManagerMessage<?> actual) {
+        Assert.assertEquals(expected.getTarget(), actual.getTarget());
+        Assert.assertEquals(expected.getSource(), actual.getSource());
+        Assert.assertEquals(expected.getAction(), actual.getAction());
+        Assert.assertEquals(expected.getEpoch(), actual.getEpoch());
+        Assert.assertEquals(expected.getSequence(), actual.getSequence());
+    }
+}
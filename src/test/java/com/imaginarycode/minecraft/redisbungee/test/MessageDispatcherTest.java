@@ -0,0 +1,72 @@
+package com.imaginarycode.minecraft.redisbungee.test;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import com.imaginarycode.minecraft.redisbungee.pubsub.MessageDispatcher;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MessageDispatcherTest {
+    private MessageDispatcher dispatcher;
+    private RedisBungeeMetrics metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        RedisBungeeConfiguration configuration = new RedisBungeeConfiguration();
+        ReflectionTestUtils.setField(configuration, "dispatcherThreads", 4);
+        ReflectionTestUtils.setField(configuration, "dispatcherQueueSize", 8);
+
+        metrics = new RedisBungeeMetrics();
+        dispatcher = new MessageDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "configuration", configuration);
+        ReflectionTestUtils.setField(dispatcher, "metrics", metrics);
+        dispatcher.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dispatcher.destroy();
+    }
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        final Map<UUID, List<Integer>> handled = new ConcurrentHashMap<>();
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            UUID player = UUID.randomUUID();
+            players.add(player);
+            handled.put(player, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        final CountDownLatch done = new CountDownLatch(16 * 100);
+        for (int i = 0; i < 100; i++) {
+            for (UUID player : players) {
+                final int sequence = i;
+                dispatcher.dispatch(player, () -> {
+                    handled.get(player).add(sequence);
+                    done.countDown();
+                });
+            }
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> sequences : handled.values()) {
+            for (int i = 0; i < sequences.size(); i++) {
+                Assert.assertEquals(i, (int) sequences.get(i));
+            }
+        }
+        Assert.assertEquals(1600, metrics.getCount("dispatcher.dispatched"));
+    }
+}
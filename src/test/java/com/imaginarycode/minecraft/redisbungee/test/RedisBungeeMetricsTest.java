@@ -0,0 +1,73 @@
+package com.imaginarycode.minecraft.redisbungee.test;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeAPI;
+import com.imaginarycode.minecraft.redisbungee.manager.ServerManager;
+import com.imaginarycode.minecraft.redisbungee.metrics.ApiCallerAspect;
+import com.imaginarycode.minecraft.redisbungee.metrics.LatencyHistogram;
+import com.imaginarycode.minecraft.redisbungee.metrics.RedisBungeeMetrics;
+import org.aspectj.lang.Aspects;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RedisBungeeMetricsTest {
+    @Test
+    public void testOutermostCallerWins() {
+        RedisBungeeMetrics metrics = new RedisBungeeMetrics();
+        Assert.assertEquals(RedisBungeeMetrics.UNKNOWN_CALLER, metrics.getCaller());
+
+        try (RedisBungeeMetrics.CallerScope outer = metrics.caller("listener.login")) {
+            try (RedisBungeeMetrics.CallerScope inner = metrics.caller("api.getServerFor")) {
+                Assert.assertEquals("listener.login", metrics.getCaller());
+            }
+            Assert.assertEquals("listener.login", metrics.getCaller());
+        }
+        Assert.assertEquals(RedisBungeeMetrics.UNKNOWN_CALLER, metrics.getCaller());
+
+        final AtomicReference<String> caller = new AtomicReference<>();
+        metrics.attributed("integrityCheck", () -> caller.set(metrics.getCaller())).run();
+        Assert.assertEquals("integrityCheck", caller.get());
+        Assert.assertEquals(RedisBungeeMetrics.UNKNOWN_CALLER, metrics.getCaller());
+    }
+
+    @Test
+    public void testApiCallsAttributed() {
+        final RedisBungeeMetrics metrics = new RedisBungeeMetrics();
+        final AtomicReference<String> caller = new AtomicReference<>();
+
+        RedisBungeeAPI api = new RedisBungeeAPI();
+        ReflectionTestUtils.setField(api, "serverManager", new ServerManager() {
+            @Override
+            public List<String> getServerIds() {
+                caller.set(metrics.getCaller());
+                return Collections.emptyList();
+            }
+        });
+
+        // The aspect is woven into the API at build time.
+        ReflectionTestUtils.setField(Aspects.aspectOf(ApiCallerAspect.class), "metrics", metrics);
+        api.getAllServers();
+        Assert.assertEquals("api.getAllServers", caller.get());
+        Assert.assertEquals(RedisBungeeMetrics.UNKNOWN_CALLER, metrics.getCaller());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(128, histogram.getPercentileMicros(50));
+        Assert.assertEquals(128, histogram.getPercentileMicros(99));
+        Assert.assertEquals(50000, histogram.getPercentileMicros(100));
+        Assert.assertEquals(50000, histogram.getMaxMicros());
+    }
+}
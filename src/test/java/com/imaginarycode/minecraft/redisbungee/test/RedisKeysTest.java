@@ -0,0 +1,78 @@
+package com.imaginarycode.minecraft.redisbungee.test;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.util.RedisKeys;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public class RedisKeysTest {
+    private static final UUID PLAYER = UUID.fromString("68ec43f7-234b-41b4-8764-dfb38b9ffe8c");
+
+    private static RedisKeys keys(boolean cluster) {
+        RedisBungeeConfiguration configuration = new RedisBungeeConfiguration();
+        ReflectionTestUtils.setField(configuration, "cluster", cluster);
+        ReflectionTestUtils.setField(configuration, "uuidCacheShards", 16);
+
+        RedisKeys keys = new RedisKeys();
+        ReflectionTestUtils.setField(keys, "configuration", configuration);
+        return keys;
+    }
+
+    @Test
+    public void testPlainNamesOutsideCluster() {
+        RedisKeys keys = keys(false);
+        Assert.assertEquals("heartbeats", keys.heartbeats());
+        Assert.assertEquals("proxy:proxy1:usersOnline", keys.proxyPlayers("proxy1"));
+        Assert.assertEquals("server:lobby:usersOnline", keys.serverPlayers("lobby"));
+        Assert.assertEquals("server-player-counts", keys.serverCounts());
+        Assert.assertEquals("player:" + PLAYER, keys.player(PLAYER));
+        Assert.assertEquals("uuid-cache", keys.uuidCache("notch"));
+        Assert.assertEquals(Arrays.asList("uuid-cache"), keys.uuidCaches());
+    }
+
+    @Test
+    public void testCoordinationKeysShareSlot() {
+        RedisKeys keys = keys(true);
+        List<String> network = Arrays.asList(keys.heartbeats(), keys.proxyCounts(), keys.serverCounts(),
+                keys.liveness("proxy1"), keys.integrityLeader());
+
+        int slot = ClusterSlotHashUtil.calculateSlot(keys.heartbeats());
+        for (String key : network) {
+            Assert.assertEquals(key, slot, ClusterSlotHashUtil.calculateSlot(key));
+        }
+        Assert.assertEquals("player:" + PLAYER, keys.player(PLAYER));
+    }
+
+    @Test
+    public void testSetsHaveOwnSlots() {
+        RedisKeys keys = keys(true);
+        Assert.assertEquals("proxy:{proxy1}:usersOnline", keys.proxyPlayers("proxy1"));
+        Assert.assertEquals("server:{lobby}:usersOnline", keys.serverPlayers("lobby"));
+
+        Assert.assertEquals(ClusterSlotHashUtil.calculateSlot("proxy1"), ClusterSlotHashUtil.calculateSlot(keys.proxyPlayers("proxy1")));
+        Assert.assertEquals(ClusterSlotHashUtil.calculateSlot("lobby"), ClusterSlotHashUtil.calculateSlot(keys.serverPlayers("lobby")));
+        Assert.assertNotEquals(ClusterSlotHashUtil.calculateSlot(keys.proxyPlayers("proxy1")), ClusterSlotHashUtil.calculateSlot(keys.proxyPlayers("proxy2")));
+    }
+
+    @Test
+    public void testUuidCacheSharded() {
+        RedisKeys keys = keys(true);
+        Assert.assertEquals(16, keys.uuidCaches().size());
+        Assert.assertTrue(keys.uuidCaches().contains(keys.uuidCache("notch")));
+        Assert.assertEquals(keys.uuidCache(PLAYER.toString()), keys.uuidCache(PLAYER.toString()));
+
+        Set<Integer> slots = new HashSet<>();
+        for (String key : keys.uuidCaches()) {
+            slots.add(ClusterSlotHashUtil.calculateSlot(key));
+        }
+        Assert.assertEquals(16, slots.size());
+    }
+}
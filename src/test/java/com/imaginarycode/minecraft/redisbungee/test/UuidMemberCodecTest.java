@@ -0,0 +1,114 @@
+package com.imaginarycode.minecraft.redisbungee.test;
+
+import com.imaginarycode.minecraft.redisbungee.RedisBungeeConfiguration;
+import com.imaginarycode.minecraft.redisbungee.util.CompactUuidSet;
+import com.imaginarycode.minecraft.redisbungee.util.ScriptRegistry;
+import com.imaginarycode.minecraft.redisbungee.util.UuidMemberCodec;
+import de.pesacraft.shares.config.CustomRedisTemplate;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public class UuidMemberCodecTest {
+    private static final UUID FIRST = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private static final UUID SECOND = UUID.fromString("853c80ef-3c37-49fd-aa49-938b674adae6");
+
+    @Test
+    public void testEncodeFollowsSetting() {
+        UuidMemberCodec codec = codec(false, null, null);
+        Assert.assertEquals("\"" + FIRST + "\"", new String(codec.encode(FIRST), StandardCharsets.UTF_8));
+        Assert.assertEquals(16, codec.encodeAlternate(FIRST).length);
+
+        UuidMemberCodec binary = codec(true, null, null);
+        Assert.assertArrayEquals(codec.encodeAlternate(FIRST), binary.encode(FIRST));
+        Assert.assertArrayEquals(codec.encode(FIRST), binary.encodeAlternate(FIRST));
+
+        // Both forms are read back by either setting.
+        for (UuidMemberCodec reader : Arrays.asList(codec, binary)) {
+            Assert.assertEquals(FIRST, reader.decode(codec.encode(FIRST)));
+            Assert.assertEquals(FIRST, reader.decode(binary.encode(FIRST)));
+        }
+    }
+
+    @Test
+    public void testDecodeMixedMembers() {
+        UuidMemberCodec codec = codec(false, null, null);
+        List<byte[]> members = new ArrayList<>();
+        members.add(codec.encode(FIRST));
+        members.add(codec.encodeAlternate(SECOND));
+        // The same player in both forms, during a switch.
+        members.add(codec.encodeAlternate(FIRST));
+        members.add("\"not a uuid\"".getBytes(StandardCharsets.UTF_8));
+
+        CompactUuidSet players = codec.decode(members);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(FIRST, SECOND)), players);
+        Assert.assertNull(codec.decode("\"not a uuid\"".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testConvertRewritesOtherForm() {
+        for (boolean binarySetting : new boolean[]{false, true}) {
+            UuidMemberCodec writer = codec(!binarySetting, null, null);
+            Set<byte[]> members = new LinkedHashSet<>();
+            members.add(writer.encodeAlternate(FIRST));
+            members.add(writer.encode(SECOND));
+            members.add("\"not a uuid\"".getBytes(StandardCharsets.UTF_8));
+
+            List<Object> args = new ArrayList<>();
+            UuidMemberCodec codec = codec(binarySetting, members, args);
+            Assert.assertEquals(1, codec.convert("server:lobby:usersOnline"));
+
+            // Pairs of the member found and the member to store instead.
+            Assert.assertEquals(2, args.size());
+            Assert.assertArrayEquals(writer.encode(SECOND), (byte[]) args.get(0));
+            Assert.assertArrayEquals(codec.encode(SECOND), (byte[]) args.get(1));
+        }
+    }
+
+    /**
+     * @param members what the set holds for {@link UuidMemberCodec#convert(String)}
+     * @param scriptArgs receives the arguments of the conversion script
+     */
+    private static UuidMemberCodec codec(boolean binaryUuids, final Set<byte[]> members, final List<Object> scriptArgs) {
+        RedisBungeeConfiguration configuration = new RedisBungeeConfiguration();
+        ReflectionTestUtils.setField(configuration, "binaryUuids", binaryUuids);
+
+        CustomRedisTemplate redisTemplate = new CustomRedisTemplate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T execute(RedisCallback<T> action) {
+                return (T) members;
+            }
+        };
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+
+        ScriptRegistry scriptRegistry = new ScriptRegistry() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+                scriptArgs.addAll(Arrays.asList(args));
+                return (T) Long.valueOf(args.length / 2);
+            }
+        };
+
+        UuidMemberCodec codec = new UuidMemberCodec();
+        ReflectionTestUtils.setField(codec, "configuration", configuration);
+        ReflectionTestUtils.setField(codec, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(codec, "scriptRegistry", scriptRegistry);
+        return codec;
+    }
+}